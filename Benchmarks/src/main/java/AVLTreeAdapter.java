@@ -0,0 +1,12 @@
+/**
+ * Exposes AVLTree to the benchmarks (which cannot import from the default package).
+ */
+public class AVLTreeAdapter implements bench.KeyedStructure {
+    private final AVLTree tree = new AVLTree();
+
+    public int insert(int k, String i) { return tree.insert(k, i); }
+    public int delete(int k) { return tree.delete(k); }
+    public String search(int k) { return tree.search(k); }
+    public int[] keysToArray() { return tree.keysToArray(); }
+    public int size() { return tree.size(); }
+}
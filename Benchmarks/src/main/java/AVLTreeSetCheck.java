@@ -0,0 +1,205 @@
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Check of AVLTree's join, split, union, intersect and difference: java -cp Benchmarks/target/benchmarks.jar AVLTreeSetCheck <br>
+ * Builds random trees of sizes from empty to tens of thousands (above the fork-join tasks' sequential threshold),
+ * runs every operation on them and on TreeMaps of the same items, and compares the keys and infos, the returned
+ * counts, min, max, and the AVL invariants of the result (parent links, heights, sizes, balance). The argument
+ * tree must become empty. join must also reject a node which is still linked in a tree.
+ * Exits with status 1 on the first violation.
+ */
+public final class AVLTreeSetCheck {
+
+    static final int[][] SIZES = {
+            { 0, 0 }, { 1, 0 }, { 0, 5 }, { 10, 10 }, { 100, 3 }, { 3, 100 }, { 3_000, 3_000 },
+            { 20_000, 5_000 }, { 5_000, 40_000 }, { 30_000, 30_000 } };
+    static final int REPEATS = 3;
+
+    private AVLTreeSetCheck() { }
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        for (int[] sizes : SIZES) {
+            for (int repeat = 0; repeat < REPEATS; repeat++) {
+                int range = 2 * (sizes[0] + sizes[1]) + 1; // about a quarter of the keys are in both trees
+                TreeMap<Integer, String> a = randomItems(random, sizes[0], range, "a");
+                TreeMap<Integer, String> b = randomItems(random, sizes[1], range, "b");
+                String name = sizes[0] + " and " + sizes[1] + " items";
+                checkUnion(a, b, name);
+                checkIntersect(a, b, name);
+                checkDifference(a, b, name);
+                checkSplitAndJoin(a, random, name);
+            }
+        }
+        checkJoinRejectsLinkedNodes();
+        System.out.println("AVLTreeSetCheck: ok");
+    }
+
+    private static void checkUnion(TreeMap<Integer, String> a, TreeMap<Integer, String> b, String name) {
+        AVLTree tree = tree(a), other = tree(b);
+        TreeMap<Integer, String> expected = new TreeMap<>(b);
+        expected.putAll(a); // the items of this tree are kept
+        int added = tree.union(other);
+        check(tree, expected, "union of " + name);
+        checkEmptied(other, "union of " + name);
+        if (added != expected.size() - a.size()) {
+            fail("union of " + name + " returned " + added + ", expected " + (expected.size() - a.size()));
+        }
+    }
+
+    private static void checkIntersect(TreeMap<Integer, String> a, TreeMap<Integer, String> b, String name) {
+        AVLTree tree = tree(a), other = tree(b);
+        TreeMap<Integer, String> expected = new TreeMap<>(a);
+        expected.keySet().retainAll(b.keySet());
+        int removed = tree.intersect(other);
+        check(tree, expected, "intersect of " + name);
+        checkEmptied(other, "intersect of " + name);
+        if (removed != a.size() - expected.size()) {
+            fail("intersect of " + name + " returned " + removed + ", expected " + (a.size() - expected.size()));
+        }
+    }
+
+    private static void checkDifference(TreeMap<Integer, String> a, TreeMap<Integer, String> b, String name) {
+        AVLTree tree = tree(a), other = tree(b);
+        TreeMap<Integer, String> expected = new TreeMap<>(a);
+        expected.keySet().removeAll(b.keySet());
+        int removed = tree.difference(other);
+        check(tree, expected, "difference of " + name);
+        checkEmptied(other, "difference of " + name);
+        if (removed != a.size() - expected.size()) {
+            fail("difference of " + name + " returned " + removed + ", expected " + (a.size() - expected.size()));
+        }
+    }
+
+    /**
+     * splits by a key (in the tree, or not) and joins the halves back with a new node of that key
+     */
+    private static void checkSplitAndJoin(TreeMap<Integer, String> a, Random random, String name) {
+        int x = a.isEmpty() || random.nextBoolean() ? random.nextInt(2 * a.size() + 1) : a.firstKey() + a.size() / 2;
+        AVLTree tree = tree(a);
+        AVLTree[] parts = tree.split(x);
+        check(parts[0], a.headMap(x, false), "split of " + name + " at " + x + " (smaller)");
+        check(parts[1], a.tailMap(x, false), "split of " + name + " at " + x + " (greater)");
+        checkEmptied(tree, "split of " + name);
+
+        TreeMap<Integer, String> expected = new TreeMap<>(a);
+        expected.put(x, "joined");
+        AVLTree lower = parts[0], higher = parts[1];
+        boolean lowerJoins = random.nextBoolean(); // join in either direction
+        int complexity = lowerJoins ? lower.join(tree.new AVLNode(x, "joined"), higher) : higher.join(tree.new AVLNode(x, "joined"), lower);
+        AVLTree joined = lowerJoins ? lower : higher;
+        check(joined, expected, "join of " + name + " at " + x);
+        checkEmptied(lowerJoins ? higher : lower, "join of " + name);
+        if (complexity < 1) {
+            fail("join of " + name + " returned " + complexity);
+        }
+        if (joined.join(tree.new AVLNode(x, "again"), new AVLTree()) != -1 || joined.size() != expected.size()) {
+            fail("join of " + name + " accepted a key which is already in the tree");
+        }
+    }
+
+    private static void checkJoinRejectsLinkedNodes() {
+        AVLTree tree = new AVLTree();
+        for (int k = 0; k < 10; k++) {
+            tree.insert(k, "v" + k);
+        }
+        AVLTree other = new AVLTree();
+        other.insert(100, "v100");
+        AVLTree.IAVLNode[] linked = { tree.getRoot(), tree.getRoot().getLeft(), other.getRoot(), tree.new AVLNode() };
+        for (AVLTree.IAVLNode node : linked) {
+            try {
+                other.join(node, new AVLTree());
+                fail("join accepted a node which isn't new: " + (node.getParent() == null ? "a root" : "a linked node"));
+            } catch (IllegalArgumentException e) {
+                // rejected
+            }
+        }
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int k = 0; k < 10; k++) {
+            expected.put(k, "v" + k);
+        }
+        check(tree, expected, "a rejected join");
+    }
+
+    // -------- helper funcs ---------------
+
+    private static TreeMap<Integer, String> randomItems(Random random, int n, int range, String prefix) {
+        TreeMap<Integer, String> items = new TreeMap<>();
+        while (items.size() < n) {
+            int k = random.nextInt(range);
+            items.put(k, prefix + k);
+        }
+        return items;
+    }
+
+    private static AVLTree tree(TreeMap<Integer, String> items) {
+        AVLTree tree = new AVLTree();
+        for (Map.Entry<Integer, String> entry : items.entrySet()) {
+            tree.insert(entry.getKey(), entry.getValue());
+        }
+        return tree;
+    }
+
+    private static void check(AVLTree tree, SortedMap<Integer, String> expected, String after) {
+        int[] keys = tree.keysToArray();
+        String[] infos = tree.infoToArray();
+        if (tree.size() != expected.size() || keys.length != expected.size()) {
+            fail(after + ": size " + tree.size() + ", expected " + expected.size());
+        }
+        int i = 0;
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            if (keys[i] != entry.getKey() || !infos[i].equals(entry.getValue())) {
+                fail(after + ": item " + i + " is " + keys[i] + "=" + infos[i] + ", expected " + entry);
+            }
+            i++;
+        }
+        String min = expected.isEmpty() ? null : expected.get(expected.firstKey());
+        String max = expected.isEmpty() ? null : expected.get(expected.lastKey());
+        if (tree.empty() != expected.isEmpty() || !equal(tree.min(), min) || !equal(tree.max(), max)) {
+            fail(after + ": empty / min / max differ");
+        }
+        if (tree.getRoot() != null && tree.getRoot().getParent() != null) {
+            fail(after + ": the root has a parent");
+        }
+        checkSubtree((AVLTree.AVLNode) tree.getRoot(), after);
+    }
+
+    /**
+     * @return
+     * the height of the subtree, after checking its parent links, heights, sizes and balance
+     */
+    private static int checkSubtree(AVLTree.AVLNode node, String after) {
+        if (node == null) {
+            return -1;
+        }
+        AVLTree.AVLNode left = (AVLTree.AVLNode) node.getLeft(), right = (AVLTree.AVLNode) node.getRight();
+        if ((left != null && left.getParent() != node) || (right != null && right.getParent() != node)) {
+            fail(after + ": a wrong parent link under key " + node.getKey());
+        }
+        int leftHeight = checkSubtree(left, after), rightHeight = checkSubtree(right, after);
+        int size = 1 + (left == null ? 0 : left.getSize()) + (right == null ? 0 : right.getSize());
+        if (node.getHeight() != 1 + Math.max(leftHeight, rightHeight) || node.getSize() != size
+                || Math.abs(leftHeight - rightHeight) > 1) {
+            fail(after + ": key " + node.getKey() + " has a wrong height / size, or isn't balanced");
+        }
+        return node.getHeight();
+    }
+
+    private static void checkEmptied(AVLTree tree, String after) {
+        if (!tree.empty() || tree.size() != 0 || tree.getRoot() != null || tree.min() != null || tree.max() != null) {
+            fail(after + ": the consumed tree isn't empty");
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void fail(String message) {
+        System.err.println("AVLTreeSetCheck: " + message);
+        System.exit(1);
+    }
+}
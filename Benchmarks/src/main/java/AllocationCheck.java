@@ -0,0 +1,114 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Allocation regression check: java -cp Benchmarks/target/benchmarks.jar AllocationCheck <br>
+ * Measures the bytes the thread allocates per operation (ThreadMXBean.getThreadAllocatedBytes) once the code is
+ * compiled, and fails when AVLTree search / delete or TreeList retrieve / delete allocate anything, or when an insert
+ * allocates more than one node - the bytes of a single insert into an empty structure.
+ * Exits with status 1 on the first violation.
+ */
+public final class AllocationCheck {
+
+    static final int SIZE = 100_000;
+    static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static int[] keys;
+    private static long sink;
+
+    private AllocationCheck() { }
+
+    public static void main(String[] args) {
+        keys = new int[SIZE];
+        Random random = new Random(1);
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = random.nextInt();
+        }
+        double[] tree = null;
+        double[] list = null;
+        for (int round = 0; round < ROUNDS; round++) { // the first rounds run until the code is compiled
+            tree = avlTree();
+            list = treeList();
+        }
+        check("AVLTree.search", tree[0], 0);
+        check("AVLTree.insert", tree[1], tree[3]);
+        check("AVLTree.delete", tree[2], 0);
+        check("TreeList.retrieve", list[0], 0);
+        check("TreeList.insert", list[1], list[3]);
+        check("TreeList.delete", list[2], 0);
+        System.out.println("AllocationCheck: ok");
+    }
+
+    /**
+     * @return
+     * {bytes per search, per insert, per delete, bytes of one node}
+     */
+    private static double[] avlTree() {
+        AVLTree empty = new AVLTree();
+        long before = allocated();
+        empty.insert(1, "info");
+        long node = allocated() - before;
+
+        AVLTree tree = new AVLTree();
+        before = allocated();
+        for (int k : keys) {
+            tree.insert(k, "info");
+        }
+        long insert = allocated() - before;
+        before = allocated();
+        for (int k : keys) {
+            sink += tree.search(k).length();
+        }
+        long search = allocated() - before;
+        before = allocated();
+        for (int k : keys) {
+            tree.delete(k);
+        }
+        long delete = allocated() - before;
+        return new double[] { (double) search / SIZE, (double) insert / SIZE, (double) delete / SIZE, node };
+    }
+
+    /**
+     * @return
+     * {bytes per retrieve, per insert, per delete, bytes of one node}
+     */
+    private static double[] treeList() {
+        TreeList empty = new TreeList();
+        long before = allocated();
+        empty.insert(0, 1, "info");
+        long node = allocated() - before;
+
+        TreeList list = new TreeList();
+        before = allocated();
+        for (int i = 0; i < SIZE; i++) {
+            list.insert(Math.floorMod(keys[i], i + 1), keys[i], "info");
+        }
+        long insert = allocated() - before;
+        before = allocated();
+        for (int i = 0; i < SIZE; i++) {
+            sink += list.retrieve(Math.floorMod(keys[i], SIZE)).getKey();
+        }
+        long retrieve = allocated() - before;
+        before = allocated();
+        for (int i = SIZE; i > 0; i--) {
+            list.delete(Math.floorMod(keys[i - 1], i));
+        }
+        long delete = allocated() - before;
+        return new double[] { (double) retrieve / SIZE, (double) insert / SIZE, (double) delete / SIZE, node };
+    }
+
+    private static long allocated() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void check(String operation, double bytesPerOp, double limit) {
+        System.out.printf("%-18s %8.2f bytes/op (limit %.0f)%n", operation, bytesPerOp, limit);
+        if (bytesPerOp > limit) {
+            System.err.println("AllocationCheck: " + operation + " allocates " + bytesPerOp + " bytes per operation, more than " + limit);
+            System.exit(1);
+        }
+    }
+}
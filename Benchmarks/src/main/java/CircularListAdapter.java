@@ -0,0 +1,26 @@
+/**
+ * Exposes CircularList to the benchmarks (which cannot import from the default package).
+ */
+public class CircularListAdapter implements bench.IndexedStructure {
+    private final CircularList list;
+    private int size;
+
+    public CircularListAdapter(int capacity) { list = new CircularList(capacity); }
+
+    public Object retrieve(int i) { return list.retrieve(i); }
+    public int insert(int i, int k, String s) {
+        int result = list.insert(i, k, s);
+        if (result != -1) {
+            size++;
+        }
+        return result;
+    }
+    public int delete(int i) {
+        int result = list.delete(i);
+        if (result != -1) {
+            size--;
+        }
+        return result;
+    }
+    public int size() { return size; }
+}
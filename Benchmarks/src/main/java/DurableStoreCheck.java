@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Recovery check of DurableAVLTree and DurableTreeList: java -cp Benchmarks/target/benchmarks.jar DurableStoreCheck <br>
+ * For every SyncPolicy and both structures, writes a log of mutations (with a checkpoint in the middle, so recovery
+ * replays a snapshot and the log after it), then damages the files as a crash would and reopens them:
+ * a torn last record (cut in its payload or in its header), a corrupt last record, garbage after the last record,
+ * a corrupt record before the last one, a checkpoint interrupted after the log rotation (a new empty log and a
+ * partial snapshot.tmp), and one interrupted after the snapshot rename (the older generation not deleted yet).
+ * The recovered contents must be those after the mutations which are whole in the log, and a mutation appended
+ * after the recovery must survive the next reopen.
+ * Exits with status 1 on the first violation.
+ */
+public final class DurableStoreCheck {
+
+    static final int OPS = 300;
+
+    private DurableStoreCheck() { }
+
+    public static void main(String[] args) throws IOException {
+        for (WriteAheadLog.SyncPolicy policy : WriteAheadLog.SyncPolicy.values()) {
+            for (boolean list : new boolean[] { false, true }) {
+                String name = (list ? "DurableTreeList" : "DurableAVLTree") + ", " + policy;
+                checkTornTails(list, policy, name);
+                checkInterruptedCheckpoints(list, policy, name);
+            }
+        }
+        System.out.println("DurableStoreCheck: ok");
+    }
+
+    /**
+     * damages the tail of the last log in each way, and checks which mutations are recovered
+     */
+    private static void checkTornTails(boolean list, WriteAheadLog.SyncPolicy policy, String name) throws IOException {
+        String[] damages = { "torn payload", "torn header", "corrupt last record", "garbage after the end", "corrupt record before the last" };
+        for (int damage = 0; damage < damages.length; damage++) {
+            Path directory = Files.createTempDirectory("durable-check");
+            try {
+                Subject subject = Subject.open(list, directory, policy);
+                for (int j = 0; j < OPS - 2; j++) {
+                    subject.op(j);
+                    if (j == OPS / 2) {
+                        subject.store.checkpoint();
+                    }
+                }
+                subject.store.sync();
+                Path log = lastLog(directory);
+                long beforeLastTwo = Files.size(log); // wasn't written yet
+                subject.op(OPS - 2);
+                subject.store.sync();
+                long beforeLast = Files.size(log);
+                subject.op(OPS - 1);
+                subject.store.close();
+                long end = Files.size(log);
+                int whole;
+                switch (damage) {
+                    case 0: truncate(log, end - 1); whole = OPS - 1; break;
+                    case 1: truncate(log, beforeLast + 3); whole = OPS - 1; break;
+                    case 2: flip(log, (beforeLast + end) / 2); whole = OPS - 1; break;
+                    case 3: append(log, new byte[] { 7, 0, 0, 0, 1, 2, 3, 4, 5 }); whole = OPS; break;
+                    default: flip(log, (beforeLastTwo + beforeLast) / 2); whole = OPS - 2; break;
+                }
+                reopenAndCheck(list, directory, policy, whole, name + ", " + damages[damage]);
+            } finally {
+                deleteAll(directory);
+            }
+        }
+    }
+
+    /**
+     * leaves the files of a checkpoint that crashed after creating the next log, and of one that crashed after
+     * renaming the snapshot - both must recover every mutation
+     */
+    private static void checkInterruptedCheckpoints(boolean list, WriteAheadLog.SyncPolicy policy, String name) throws IOException {
+        Path directory = Files.createTempDirectory("durable-check");
+        Path older = Files.createTempDirectory("durable-check-older");
+        try {
+            Subject subject = Subject.open(list, directory, policy);
+            for (int j = 0; j < OPS; j++) {
+                subject.op(j);
+                if (j == OPS / 2) {
+                    subject.store.checkpoint();
+                }
+            }
+            subject.store.close();
+            long generation = generationOf(lastLog(directory));
+            Files.createFile(directory.resolve("wal." + (generation + 1))); // rotated, then crashed in the snapshot
+            Files.write(directory.resolve("snapshot." + (generation + 1) + ".tmp"), new byte[] { 0x41, 0x56, 0x4C });
+            int ops = reopenAndCheck(list, directory, policy, OPS, name + ", crash before the snapshot rename");
+            if (Files.exists(directory.resolve("snapshot." + (generation + 1) + ".tmp"))) {
+                fail(name + ": the partial snapshot wasn't deleted by the recovery");
+            }
+
+            copyAll(directory, older);
+            subject = Subject.open(list, directory, policy);
+            subject.replayModel(ops);
+            subject.op(ops++);
+            subject.store.checkpoint();
+            subject.op(ops++);
+            subject.store.close();
+            copyAll(older, directory); // the previous generation, not deleted yet - recovery must take the newer one
+            reopenAndCheck(list, directory, policy, ops, name + ", crash before deleting the older generation");
+        } finally {
+            deleteAll(directory);
+            deleteAll(older);
+        }
+    }
+
+    /**
+     * reopens the store, compares it with the first whole mutations, and checks that a mutation appended now
+     * survives another reopen
+     * @return
+     * the number of mutations in the store at the end
+     */
+    private static int reopenAndCheck(boolean list, Path directory, WriteAheadLog.SyncPolicy policy, int whole, String name)
+            throws IOException {
+        Subject recovered = Subject.open(list, directory, policy);
+        Subject expected = Subject.model(list, whole);
+        if (!recovered.contents().equals(expected.contents())) {
+            fail(name + ": recovered " + recovered.contents().size() + " items, expected those after " + whole + " mutations");
+        }
+        recovered.replayModel(whole);
+        recovered.op(whole);
+        recovered.store.close();
+        Subject reopened = Subject.open(list, directory, policy);
+        if (!reopened.contents().equals(Subject.model(list, whole + 1).contents())) {
+            fail(name + ": a mutation appended after the recovery was lost");
+        }
+        reopened.store.close();
+        return whole + 1;
+    }
+
+    /**
+     * a durable structure together with a model of the same mutations (a TreeMap / an ArrayList). <br>
+     * mutation j of a tree inserts key j, or every fifth one deletes key j - 2; of a list it inserts key j at a
+     * position spread by j, or every fifth one deletes a position.
+     */
+    private static final class Subject {
+        final boolean list;
+        final DurableStore store;
+        final TreeMap<Integer, String> treeModel = new TreeMap<>();
+        final List<String> listModel = new ArrayList<>();
+
+        private Subject(boolean list, DurableStore store) {
+            this.list = list;
+            this.store = store;
+        }
+
+        static Subject open(boolean list, Path directory, WriteAheadLog.SyncPolicy policy) throws IOException {
+            return new Subject(list, list ? DurableTreeList.open(directory, policy) : DurableAVLTree.open(directory, policy));
+        }
+
+        /**
+         * @return
+         * a model alone (no store), after the first ops mutations
+         */
+        static Subject model(boolean list, int ops) {
+            Subject subject = new Subject(list, null);
+            subject.replayModel(ops);
+            return subject;
+        }
+
+        void replayModel(int ops) {
+            this.treeModel.clear();
+            this.listModel.clear();
+            for (int j = 0; j < ops; j++) {
+                apply(j, false);
+            }
+        }
+
+        void op(int j) {
+            apply(j, true);
+        }
+
+        private void apply(int j, boolean toStore) {
+            if (this.list) {
+                int size = this.listModel.size();
+                if (j % 5 == 4 && size > 0) {
+                    int i = j % size;
+                    this.listModel.remove(i);
+                    if (toStore) {
+                        ((DurableTreeList) this.store).delete(i);
+                    }
+                }
+                else {
+                    int i = (j * 7) % (size + 1);
+                    this.listModel.add(i, j + "=v" + j);
+                    if (toStore) {
+                        ((DurableTreeList) this.store).insert(i, j, "v" + j);
+                    }
+                }
+            }
+            else if (j % 5 == 4) {
+                this.treeModel.remove(j - 2);
+                if (toStore) {
+                    ((DurableAVLTree) this.store).delete(j - 2);
+                }
+            }
+            else {
+                this.treeModel.put(j, "v" + j);
+                if (toStore) {
+                    ((DurableAVLTree) this.store).insert(j, "v" + j);
+                }
+            }
+        }
+
+        /**
+         * @return
+         * the items of the store as "key=info" in order, or of the model if there is no store
+         */
+        List<String> contents() {
+            List<String> items = new ArrayList<>();
+            if (this.store == null) {
+                if (this.list) {
+                    items.addAll(this.listModel);
+                }
+                else {
+                    for (Map.Entry<Integer, String> entry : this.treeModel.entrySet()) {
+                        items.add(entry.getKey() + "=" + entry.getValue());
+                    }
+                }
+            }
+            else if (this.list) {
+                DurableTreeList durable = (DurableTreeList) this.store;
+                for (int i = 0; durable.retrieve(i) != null; i++) {
+                    items.add(durable.retrieve(i).getKey() + "=" + durable.retrieve(i).getInfo());
+                }
+            }
+            else {
+                DurableAVLTree durable = (DurableAVLTree) this.store;
+                int[] keys = durable.keysToArray();
+                String[] infos = durable.infoToArray();
+                for (int i = 0; i < keys.length; i++) {
+                    items.add(keys[i] + "=" + infos[i]);
+                }
+            }
+            return items;
+        }
+    }
+
+    // -------- helper funcs ---------------
+
+    private static Path lastLog(Path directory) throws IOException {
+        Path last = null;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith("wal.") && (last == null || generationOf(file) > generationOf(last))) {
+                    last = file;
+                }
+            }
+        }
+        return last;
+    }
+
+    private static long generationOf(Path log) {
+        return Long.parseLong(log.getFileName().toString().substring("wal.".length()));
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void flip(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x5A));
+            b.rewind();
+            channel.write(b, position);
+        }
+    }
+
+    private static void append(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes, StandardOpenOption.APPEND);
+    }
+
+    private static void copyAll(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path target = to.resolve(file.getFileName());
+                if (!Files.exists(target)) {
+                    Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+    }
+
+    private static void deleteAll(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void fail(String message) {
+        System.err.println("DurableStoreCheck: " + message);
+        System.exit(1);
+    }
+}
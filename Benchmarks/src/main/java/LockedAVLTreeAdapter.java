@@ -0,0 +1,12 @@
+/**
+ * Exposes AVLTree behind one global lock - the way it is shared between threads without ConcurrentAVLTree.
+ */
+public class LockedAVLTreeAdapter implements bench.KeyedStructure {
+    private final AVLTree tree = new AVLTree();
+
+    public synchronized int insert(int k, String i) { return tree.insert(k, i); }
+    public synchronized int delete(int k) { return tree.delete(k); }
+    public synchronized String search(int k) { return tree.search(k); }
+    public synchronized int[] keysToArray() { return tree.keysToArray(); }
+    public synchronized int size() { return tree.size(); }
+}
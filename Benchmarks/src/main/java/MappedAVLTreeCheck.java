@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Crash check of MappedAVLTree: java -cp Benchmarks/target/benchmarks.jar MappedAVLTreeCheck <br>
+ * Compares the tree with a TreeMap after reopening it: after a flush and close, after a crash (the files copied
+ * while the tree has unflushed changes, arena compactions among them - the copy must open as of the last flush),
+ * after a torn header slot (the newest header corrupted - the tree must open as of the flush before it), and
+ * checks that a file with both headers corrupted is rejected. Also makes an arena compaction fail (its new info
+ * file can't be created) and checks that the update which ran it throws and leaves the tree unchanged.
+ * Exits with status 1 on the first violation.
+ */
+public final class MappedAVLTreeCheck {
+
+    static final int KEYS = 4_000;
+    static final int INFO_BYTES = 2_000;
+    /**
+     * offset of the sequence number in a header slot (see MappedAVLTree)
+     */
+    static final int H_SEQUENCE = 24;
+
+    private final Path directory;
+    private final Path file;
+    private final Random random = new Random(1);
+    private final TreeMap<Integer, String> expected = new TreeMap<>();
+    private MappedAVLTree tree;
+
+    private MappedAVLTreeCheck(Path directory) throws IOException {
+        this.directory = directory;
+        this.file = directory.resolve("tree");
+        this.tree = MappedAVLTree.open(this.file);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("mapped-check");
+        Path crashed = Files.createTempDirectory("mapped-check-crash");
+        try {
+            MappedAVLTreeCheck check = new MappedAVLTreeCheck(directory);
+            check.checkReopen();
+            check.checkCrash(crashed);
+            check.checkTornHeader();
+            check.checkFailedCompaction();
+            check.tree.close();
+        } finally {
+            deleteAll(directory);
+            deleteAll(crashed);
+        }
+        System.out.println("MappedAVLTreeCheck: ok");
+    }
+
+    private void checkReopen() throws IOException {
+        update(KEYS, 0.2, 40);
+        this.tree.flush();
+        reopen();
+        check(this.tree, this.expected, "reopen after a flush");
+        update(KEYS / 4, 0.5, 40);
+        reopen(); // close flushes
+        check(this.tree, this.expected, "reopen after a close");
+    }
+
+    /**
+     * copies the files while the tree has unflushed changes (with compactions of the arena among them)
+     */
+    private void checkCrash(Path crashed) throws IOException {
+        this.tree.flush();
+        TreeMap<Integer, String> flushed = new TreeMap<>(this.expected);
+        long generation = lastGeneration(this.directory);
+        update(KEYS, 0.1, INFO_BYTES);
+        update(KEYS, 0.9, INFO_BYTES); // garbage - compactions
+        if (lastGeneration(this.directory) == generation) {
+            fail("the arena was never compacted - the crash doesn't cover a compaction");
+        }
+        copyAll(this.directory, crashed);
+        MappedAVLTree recovered = MappedAVLTree.open(crashed.resolve("tree"));
+        check(recovered, flushed, "a crash with unflushed changes");
+        recovered.insert(-1, "after the crash");
+        recovered.close();
+        recovered = MappedAVLTree.open(crashed.resolve("tree"));
+        flushed.put(-1, "after the crash");
+        check(recovered, flushed, "changes after a crash recovery");
+        recovered.close();
+
+        this.tree.flush();
+        deleteAll(crashed);
+        Files.createDirectory(crashed);
+        copyAll(this.directory, crashed);
+        recovered = MappedAVLTree.open(crashed.resolve("tree"));
+        check(recovered, this.expected, "a crash right after a flush");
+        recovered.close();
+        deleteAll(crashed);
+        Files.createDirectory(crashed);
+    }
+
+    /**
+     * corrupts the newest header slot, as a crash in the middle of writing it would
+     */
+    private void checkTornHeader() throws IOException {
+        this.tree.flush();
+        TreeMap<Integer, String> flushed = new TreeMap<>(this.expected);
+        update(200, 0.3, 40); // small infos - no compaction, so the flush only writes pages and the header
+        this.tree.close();
+        long[] sequences = { sequence(0), sequence(1) };
+        corruptHeader(sequences[0] > sequences[1] ? 0 : 1);
+        this.tree = MappedAVLTree.open(this.file);
+        this.expected.clear();
+        this.expected.putAll(flushed);
+        check(this.tree, this.expected, "a torn header slot");
+        update(500, 0.3, 40);
+        reopen();
+        check(this.tree, this.expected, "changes after a torn header recovery");
+
+        this.tree.close();
+        corruptHeader(0);
+        corruptHeader(1);
+        try {
+            MappedAVLTree.open(this.file).close();
+            fail("a file with both header slots corrupt was opened");
+        } catch (IOException e) {
+            // rejected
+        }
+        for (int slot = 0; slot < 2; slot++) { // restore the bytes, the headers are valid again
+            corruptHeader(slot);
+        }
+        this.tree = MappedAVLTree.open(this.file);
+        check(this.tree, this.expected, "headers restored");
+    }
+
+    /**
+     * blocks the next info file with a directory, so the next compaction can't create it
+     */
+    private void checkFailedCompaction() throws IOException {
+        update(KEYS, 0.0, INFO_BYTES);
+        long next = lastGeneration(this.directory) + 1;
+        Path blocker = this.directory.resolve("tree.info." + next);
+        Files.createDirectory(blocker);
+        Files.createFile(blocker.resolve("blocker"));
+        boolean failed = false;
+        List<Integer> keys = new ArrayList<>(this.expected.keySet());
+        for (int j = 0; j < keys.size() && !failed; j++) {
+            int k = keys.get(j);
+            try {
+                this.tree.delete(k);
+                this.expected.remove(k);
+            } catch (UncheckedIOException e) {
+                failed = true;
+                check(this.tree, this.expected, "a failed compaction (delete of " + k + ")");
+                try {
+                    this.tree.insert(Integer.MAX_VALUE, "x");
+                    fail("an insert ran while its compaction failed");
+                } catch (UncheckedIOException again) {
+                    check(this.tree, this.expected, "a failed compaction (insert)");
+                }
+            }
+        }
+        if (!failed) {
+            fail("no compaction ran");
+        }
+        Files.delete(blocker.resolve("blocker"));
+        Files.delete(blocker);
+        int k = this.expected.firstKey();
+        this.tree.delete(k);
+        this.expected.remove(k);
+        check(this.tree, this.expected, "a compaction after the failed one");
+        reopen();
+        check(this.tree, this.expected, "reopen after a failed compaction");
+    }
+
+    // -------- helper funcs ---------------
+
+    /**
+     * runs count random inserts (of infos of about infoBytes) and deletes (with the given probability)
+     */
+    private void update(int count, double deletes, int infoBytes) {
+        for (int j = 0; j < count; j++) {
+            if (random.nextDouble() < deletes && !this.expected.isEmpty()) {
+                Integer k = this.expected.ceilingKey(random.nextInt(2 * KEYS));
+                k = k == null ? this.expected.firstKey() : k;
+                if (this.tree.delete(k) == -1) {
+                    fail("delete(" + k + ") of a present key failed");
+                }
+                this.expected.remove(k);
+            }
+            else {
+                int k = random.nextInt(2 * KEYS);
+                String info = k + ":" + "x".repeat(random.nextInt(infoBytes));
+                if ((this.tree.insert(k, info) == -1) != this.expected.containsKey(k)) {
+                    fail("insert(" + k + ") result");
+                }
+                this.expected.putIfAbsent(k, info);
+            }
+        }
+    }
+
+    private void reopen() throws IOException {
+        this.tree.close();
+        this.tree = MappedAVLTree.open(this.file);
+    }
+
+    private static void check(MappedAVLTree tree, TreeMap<Integer, String> expected, String after) {
+        int[] keys = tree.keysToArray();
+        String[] infos = tree.infoToArray();
+        if (tree.size() != expected.size() || keys.length != expected.size()) {
+            fail(after + ": " + tree.size() + " keys, expected " + expected.size());
+        }
+        int i = 0;
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            if (keys[i] != entry.getKey() || !entry.getValue().equals(infos[i]) || !entry.getValue().equals(tree.search(keys[i]))) {
+                fail(after + ": item " + i + " differs (key " + keys[i] + ", expected " + entry.getKey() + ")");
+            }
+            i++;
+        }
+    }
+
+    private long sequence(int slot) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(bytes, (long) slot * MappedAVLTree.HEADER_BYTES + H_SEQUENCE);
+            return bytes.getLong(0);
+        }
+    }
+
+    /**
+     * flips the bits of a byte of the root field in a header slot (flipping again restores it)
+     */
+    private void corruptHeader(int slot) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = (long) slot * MappedAVLTree.HEADER_BYTES + H_SEQUENCE + Long.BYTES;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) ~b.get(0));
+            b.rewind();
+            channel.write(b, position);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return
+     * the newest generation of the info files in the directory ("tree.info" is generation 0)
+     */
+    private static long lastGeneration(Path directory) throws IOException {
+        long last = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("tree.info.")) {
+                    last = Math.max(last, Long.parseLong(name.substring("tree.info.".length())));
+                }
+            }
+        }
+        return last;
+    }
+
+    private static void copyAll(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private static void deleteAll(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isDirectory(file)) {
+                    deleteAll(file);
+                }
+                else {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void fail(String message) {
+        System.err.println("MappedAVLTreeCheck: " + message);
+        System.exit(1);
+    }
+}
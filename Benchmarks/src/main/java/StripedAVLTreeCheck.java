@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stress check of StripedAVLTree's linearizability: java -cp Benchmarks/target/benchmarks.jar StripedAVLTreeCheck [seconds] <br>
+ * Writer t owns the keys k with k mod (WRITERS + 1) == t, so it knows what every one of its operations must return,
+ * and it never deletes its last key - so the tree is never empty, and min, max, empty, size, keysToArray must
+ * always see at least WRITERS keys. A grower thread owns the last residue and only inserts; a reader must see every
+ * key the grower finished inserting before the read began. <br>
+ * Runs on a tree with sparse keys over the whole int range (stripes keep getting empty) and with dense keys
+ * (the default tree splits and merges stripes meanwhile), on the default tree and on one with 64 fixed stripes.
+ * Exits with status 1 on the first violation.
+ */
+public final class StripedAVLTreeCheck {
+
+    static final int WRITERS = 4;
+    static final int READERS = 2;
+    static final int MODULUS = WRITERS + 1;
+    static final int DENSE_RANGE = 1 << 20;
+
+    private final StripedAVLTree tree;
+    private final boolean dense;
+    private final AtomicReference<String> failure = new AtomicReference<>();
+    private final AtomicInteger grown = new AtomicInteger();
+    /**
+     * the readers start once every writer has a key in the tree
+     */
+    private final CountDownLatch started = new CountDownLatch(WRITERS);
+    private volatile boolean running = true;
+
+    private StripedAVLTreeCheck(StripedAVLTree tree, boolean dense) {
+        this.tree = tree;
+        this.dense = dense;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = (long) (1000 * (args.length > 0 ? Double.parseDouble(args[0]) : 2));
+        checkSequential(new StripedAVLTree());
+        int[] evenBounds = new int[63];
+        for (int s = 1; s < 64; s++) {
+            evenBounds[s - 1] = (int) (Integer.MIN_VALUE + s * (1L << 26));
+        }
+        for (boolean dense : new boolean[] { false, true }) {
+            run("default tree, " + (dense ? "dense" : "sparse") + " keys", new StripedAVLTree(), dense, millis);
+            run("fixed stripes, " + (dense ? "dense" : "sparse") + " keys", new StripedAVLTree(evenBounds), dense, millis);
+        }
+        System.out.println("StripedAVLTree: ok");
+    }
+
+    /**
+     * compares a single-threaded run with a TreeMap, through splits (keys move to a new range) and merges
+     */
+    static void checkSequential(StripedAVLTree tree) {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(1);
+        for (int round = 0; round < 4; round++) {
+            int base = round * 1_000_000_000 - 2_000_000_000;
+            for (int i = 0; i < 60_000; i++) {
+                int k = base + random.nextInt(100_000);
+                boolean absent = !expected.containsKey(k);
+                if ((tree.insert(k, "v" + k) != -1) != absent) {
+                    fail("insert(" + k + ") result");
+                }
+                expected.putIfAbsent(k, "v" + k);
+            }
+            for (int i = 0; i < 40_000; i++) {
+                int k = base + random.nextInt(100_000);
+                if ((tree.delete(k) != -1) != (expected.remove(k) != null)) {
+                    fail("delete(" + k + ") result");
+                }
+            }
+            int[] keys = tree.keysToArray();
+            String[] infos = tree.infoToArray();
+            int i = 0;
+            for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+                if (keys[i] != entry.getKey() || !infos[i].equals(entry.getValue()) || !entry.getValue().equals(tree.search(entry.getKey()))) {
+                    fail("content differs at index " + i);
+                }
+                i++;
+            }
+            if (i != keys.length || tree.size() != expected.size() || !expected.firstEntry().getValue().equals(tree.min())
+                    || !expected.lastEntry().getValue().equals(tree.max())) {
+                fail("size / min / max differ");
+            }
+            if (tree.stripeCount() < 2 || tree.stripeCount() > StripedAVLTree.MAX_STRIPES) {
+                fail("the tree has " + tree.stripeCount() + " stripes");
+            }
+        }
+    }
+
+    private static void run(String name, StripedAVLTree tree, boolean dense, long millis) throws InterruptedException {
+        StripedAVLTreeCheck check = new StripedAVLTreeCheck(tree, dense);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            int owner = t;
+            threads.add(new Thread(() -> check.write(owner)));
+        }
+        if (dense) {
+            threads.add(new Thread(check::grow));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(check::read));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(millis);
+        check.running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (check.failure.get() != null) {
+            fail(name + ": " + check.failure.get());
+        }
+        System.out.println(name + ": ok, " + tree.size() + " keys in " + tree.stripeCount() + " stripes");
+    }
+
+    /**
+     * inserts and deletes keys of the writer's residue, checking every result against what the writer knows
+     */
+    private void write(int owner) {
+        Random random = new Random(owner);
+        Map<Integer, String> present = new HashMap<>();
+        List<Integer> presentKeys = new ArrayList<>();
+        long version = 0;
+        while (this.running && this.failure.get() == null) {
+            int k = ownKey(random, owner);
+            String info = owner + ":" + version++;
+            if (presentKeys.size() < 2 || (random.nextBoolean() && (this.dense || presentKeys.size() < 4))) { // sparse: few keys
+                int result = this.tree.insert(k, info);
+                if ((result == -1) != present.containsKey(k)) {
+                    report("insert(" + k + ") returned " + result);
+                }
+                if (result != -1) {
+                    present.put(k, info);
+                    presentKeys.add(k);
+                    if (presentKeys.size() == 1 && version == 1) {
+                        this.started.countDown();
+                    }
+                }
+            }
+            else {
+                if (random.nextInt(4) == 0 && !present.containsKey(k) && this.tree.delete(k) != -1) {
+                    report("delete(" + k + ") of a missing key succeeded");
+                }
+                int index = random.nextInt(presentKeys.size());
+                k = presentKeys.get(index);
+                if (this.tree.delete(k) == -1) {
+                    report("delete(" + k + ") of a present key failed");
+                }
+                present.remove(k);
+                presentKeys.set(index, presentKeys.get(presentKeys.size() - 1));
+                presentKeys.remove(presentKeys.size() - 1);
+            }
+            String found = this.tree.search(k);
+            if (found == null ? present.containsKey(k) : !found.equals(present.get(k))) {
+                report("search(" + k + ") returned " + found + " after the writer's own update");
+            }
+        }
+    }
+
+    /**
+     * inserts new keys of the last residue, and publishes how many it inserted after each one
+     */
+    private void grow() {
+        int next = WRITERS;
+        while (this.running && this.failure.get() == null && next < DENSE_RANGE) {
+            if (this.tree.insert(next, "grown") == -1) {
+                report("insert(" + next + ") of a new key failed");
+            }
+            this.grown.set((next - WRITERS) / MODULUS + 1);
+            next += MODULUS;
+        }
+    }
+
+    private void read() {
+        try {
+            this.started.await();
+        } catch (InterruptedException e) {
+            return;
+        }
+        int lastGrown = 0;
+        while (this.running && this.failure.get() == null) {
+            int grownBefore = this.grown.get();
+            if (this.tree.empty() || this.tree.min() == null || this.tree.max() == null) {
+                report("empty / min / max found no key in a tree which always has some");
+            }
+            if (this.tree.size() < WRITERS) {
+                report("size " + this.tree.size() + " is below the keys the writers always keep");
+            }
+            int[] keys = this.tree.keysToArray();
+            int grownSeen = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0 && keys[i - 1] >= keys[i]) {
+                    report("keysToArray isn't sorted");
+                }
+                if (Math.floorMod(keys[i], MODULUS) == WRITERS && keys[i] >= 0) {
+                    grownSeen++;
+                }
+            }
+            if (keys.length < WRITERS || grownSeen < grownBefore || grownSeen < lastGrown) {
+                report("keysToArray missed keys: " + keys.length + " keys, " + grownSeen + " grown of " + grownBefore);
+            }
+            lastGrown = grownSeen;
+        }
+    }
+
+    /**
+     * @return
+     * a random key of the owner's residue - from the whole int range (sparse), or from [0, DENSE_RANGE)
+     */
+    private int ownKey(Random random, int owner) {
+        int multiples = Integer.MAX_VALUE / MODULUS - 1; // so k * MODULUS + owner doesn't overflow
+        int k = this.dense ? random.nextInt(DENSE_RANGE / MODULUS) : random.nextInt(2 * multiples) - multiples;
+        return k * MODULUS + owner;
+    }
+
+    private void report(String message) {
+        this.failure.compareAndSet(null, message);
+    }
+
+    private static void fail(String message) {
+        System.err.println("StripedAVLTree: " + message);
+        System.exit(1);
+    }
+}
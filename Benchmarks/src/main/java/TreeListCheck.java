@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Check of TreeList's range operations: java -cp Benchmarks/target/benchmarks.jar TreeListCheck <br>
+ * Runs random inserts, deletes, deleteRange, insertAll, splitAt and concat against an ArrayList, and after each one
+ * compares the size, the order of the items and the last item (an append goes after it, without a walk down).
+ * Also checks that a cursor made before a deleteRange is invalidated rather than changing the deleted nodes.
+ * Exits with status 1 on the first violation.
+ */
+public final class TreeListCheck {
+
+    static final int ROUNDS = 2_000;
+    static final int MAX_SIZE = 2_000;
+
+    private TreeListCheck() { }
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        TreeList list = new TreeList();
+        List<Integer> expected = new ArrayList<>();
+        int nextKey = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            int n = expected.size();
+            switch (random.nextInt(6)) {
+                case 0: { // inserts, appends among them
+                    for (int j = 0; j < 20 && expected.size() < MAX_SIZE; j++) {
+                        int i = random.nextBoolean() ? expected.size() : random.nextInt(expected.size() + 1);
+                        list.insert(i, nextKey, "v" + nextKey);
+                        expected.add(i, nextKey++);
+                    }
+                    break;
+                }
+                case 1: {
+                    if (n > 0) {
+                        int i = random.nextInt(n);
+                        list.delete(i);
+                        expected.remove(i);
+                    }
+                    break;
+                }
+                case 2: case 3: {
+                    int from = random.nextInt(n + 1);
+                    int to = from + random.nextInt(n - from + 1);
+                    if (list.deleteRange(from, to) != 0) {
+                        fail("deleteRange(" + from + ", " + to + ") of a list of " + n + " failed");
+                    }
+                    expected.subList(from, to).clear();
+                    break;
+                }
+                case 4: {
+                    int m = random.nextInt(Math.max(1, MAX_SIZE - n));
+                    int[] keys = new int[m];
+                    String[] infos = new String[m];
+                    for (int j = 0; j < m; j++) {
+                        keys[j] = nextKey;
+                        infos[j] = "v" + nextKey++;
+                    }
+                    int i = random.nextInt(n + 1);
+                    list.insertAll(i, keys, infos);
+                    for (int j = 0; j < m; j++) {
+                        expected.add(i + j, keys[j]);
+                    }
+                    break;
+                }
+                default: { // split and concat back
+                    TreeList[] parts = list.splitAt(random.nextInt(n + 1));
+                    check(parts[0], expected.subList(0, (int) parts[0].spliterator().estimateSize()), "splitAt");
+                    parts[0].concat(parts[1]);
+                    list = parts[0];
+                    break;
+                }
+            }
+            check(list, expected, "round " + round);
+        }
+        checkCursorInvalidated();
+        System.out.println("TreeList: ok");
+    }
+
+    /**
+     * compares the list with the expected keys: size, every item in order, the last item, and an append after it
+     */
+    private static void check(TreeList list, List<Integer> expected, String after) {
+        int n = expected.size();
+        if (list.spliterator().estimateSize() != n || list.retrieve(n) != null || (n > 0 && list.retrieve(n - 1) == null)) {
+            fail(after + ": the size isn't " + n);
+        }
+        int[] index = { 0 };
+        list.spliterator().forEachRemaining(item -> {
+            int i = index[0]++;
+            if (item.getKey() != expected.get(i) || !item.getInfo().equals("v" + expected.get(i))) {
+                fail(after + ": item " + i + " is " + item.getKey() + ", expected " + expected.get(i));
+            }
+        });
+        for (int i = 0; i < n; i++) {
+            if (list.retrieve(i).getKey() != expected.get(i)) {
+                fail(after + ": retrieve(" + i + ") is " + list.retrieve(i).getKey() + ", expected " + expected.get(i));
+            }
+        }
+        list.insert(n, -1, "v-1"); // through the last node
+        if (list.retrieve(n).getKey() != -1 || (n > 0 && list.retrieve(n - 1).getKey() != expected.get(n - 1))) {
+            fail(after + ": the last item is wrong - an append didn't go to the end");
+        }
+        list.delete(n);
+    }
+
+    /**
+     * a cursor on an item deleteRange removed must throw, and leave the list as it was
+     */
+    private static void checkCursorInvalidated() {
+        TreeList list = new TreeList();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list.insert(i, i, "v" + i);
+            expected.add(i);
+        }
+        TreeList.Cursor inRange = list.cursor(50);
+        TreeList.Cursor outside = list.cursor(10);
+        list.deleteRange(40, 60);
+        expected.subList(40, 60).clear();
+        for (TreeList.Cursor cursor : new TreeList.Cursor[] { inRange, outside }) {
+            try {
+                cursor.insertAtCursor(1000, "v1000");
+                fail("a cursor made before deleteRange was still used");
+            } catch (ConcurrentModificationException e) {
+                // invalidated
+            }
+            try {
+                cursor.deleteAtCursor();
+                fail("a cursor made before deleteRange was still used");
+            } catch (ConcurrentModificationException e) {
+                // invalidated
+            }
+        }
+        check(list, expected, "cursors after deleteRange");
+        TreeList.Cursor fresh = list.cursor(40);
+        if (fresh.getItem().getKey() != 60 || fresh.deleteAtCursor() != 0) {
+            fail("a cursor made after deleteRange isn't on the right item");
+        }
+        expected.remove(40);
+        check(list, expected, "a new cursor after deleteRange");
+    }
+
+    private static void fail(String message) {
+        System.err.println("TreeList: " + message);
+        System.exit(1);
+    }
+}
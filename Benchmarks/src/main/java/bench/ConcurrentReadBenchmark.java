@@ -0,0 +1,66 @@
+package bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read throughput of a shared tree while one writer keeps inserting and deleting. <br>
+ * The group runs 7 readers and 1 writer; scale it with JMH's -tg (e.g. -tg 31,1 on 32 cores).
+ * The tree holds the even keys, readers search them, the writer inserts and deletes odd keys.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentReadBenchmark {
+
+    static final String INFO = "info";
+
+    @Param({"LockedAVLTree", "ConcurrentAVLTree"})
+    public String impl;
+
+    @Param({"1000000"})
+    public int size;
+
+    private KeyedStructure tree;
+
+    @Setup(Level.Trial)
+    public void build() {
+        tree = Structures.keyed(impl);
+        for (int p : KeyPattern.RANDOM.order(size)) {
+            tree.insert(2 * p, INFO);
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(7)
+    public String search() {
+        return tree.search(2 * ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public int write() {
+        int k = 2 * ThreadLocalRandom.current().nextInt(size) + 1;
+        return tree.insert(k, INFO) == -1 ? tree.delete(k) : 0;
+    }
+}
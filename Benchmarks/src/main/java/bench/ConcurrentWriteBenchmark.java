@@ -0,0 +1,57 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write throughput of a shared tree when all the writer threads insert / delete uniformly random keys
+ * in [0, KEY_RANGE) - a realistic key set, which the default StripedAVLTree cuts into stripes by itself. <br>
+ * The tree is filled with PREFILL random keys first, so the writers work on a tree of a steady size.
+ * Scale the writers with JMH's -t, e.g. for t in 1 2 4 8 16 32 64; do ... -t $t -rff write-$t.json; done
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentWriteBenchmark {
+
+    static final String INFO = "info";
+    static final int KEY_RANGE = 10_000_000;
+    static final int PREFILL = 1 << 20;
+
+    @Param({"LockedAVLTree", "ConcurrentAVLTree", "StripedAVLTree"})
+    public String impl;
+
+    private KeyedStructure tree;
+
+    @Setup(Level.Trial)
+    public void build() {
+        tree = Structures.keyed(impl);
+        Random random = new Random(1);
+        for (int i = 0; i < PREFILL; i++) {
+            tree.insert(random.nextInt(KEY_RANGE), INFO);
+        }
+    }
+
+    @Benchmark
+    public int write() {
+        int k = ThreadLocalRandom.current().nextInt(KEY_RANGE);
+        return tree.insert(k, INFO) == -1 ? tree.delete(k) : 0;
+    }
+}
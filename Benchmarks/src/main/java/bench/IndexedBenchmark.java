@@ -0,0 +1,93 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * insert / delete / retrieve at the head, middle or tail of a list of the given size. <br>
+ * Mutations are measured as single-shot batches of BATCH operations, and the list is brought back to
+ * its original size before every batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class IndexedBenchmark {
+
+    static final int BATCH = 256;
+    static final String INFO = "info";
+
+    @Param({"TreeList", "ChunkedTreeList", "CircularList"})
+    public String impl;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param
+    public Position position;
+
+    private IndexedStructure list;
+    private int retrieveIndex;
+    private int inserted;
+    private int deleted;
+
+    @Setup(Level.Trial)
+    public void build() {
+        list = Structures.indexed(impl, size + BATCH);
+        for (int i = 0; i < size; i++) {
+            list.insert(i, i, INFO);
+        }
+        retrieveIndex = position.index(size, false);
+    }
+
+    @Setup(Level.Iteration)
+    public void restore() {
+        for (int j = 0; j < inserted; j++) {
+            list.delete(position.index(list.size(), false));
+        }
+        for (int j = 0; j < deleted; j++) {
+            list.insert(position.index(list.size(), true), j, INFO);
+        }
+        inserted = 0;
+        deleted = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 50, batchSize = BATCH)
+    @Measurement(iterations = 50, batchSize = BATCH)
+    @OperationsPerInvocation(BATCH)
+    public int insert() {
+        return list.insert(position.index(list.size(), true), inserted++, INFO);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 50, batchSize = BATCH)
+    @Measurement(iterations = 50, batchSize = BATCH)
+    @OperationsPerInvocation(BATCH)
+    public int delete() {
+        deleted++;
+        return list.delete(position.index(list.size(), false));
+    }
+
+    @Benchmark
+    public Object retrieve() {
+        return list.retrieve(retrieveIndex);
+    }
+}
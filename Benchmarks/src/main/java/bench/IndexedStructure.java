@@ -0,0 +1,12 @@
+package bench;
+
+/**
+ * The operations the benchmarks run against a list of Items accessed by index (TreeList, CircularList). <br>
+ * Reached through adapters in the default package, see Structures.
+ */
+public interface IndexedStructure {
+    Object retrieve(int i);
+    int insert(int i, int k, String s);
+    int delete(int i);
+    int size();
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import java.util.Random;
+
+/**
+ * The order in which keys are fed to a tree.
+ */
+public enum KeyPattern {
+    /** 0, 1, 2, ... - every insert lands on the right spine */
+    SEQUENTIAL,
+    /** a fixed-seed shuffle of 0..n-1 */
+    RANDOM,
+    /** 0, n-1, 1, n-2, ... - every insert lands between the two previous ones, forcing double rotations */
+    ADVERSARIAL;
+
+    /**
+     * @param n number of keys
+     * @return
+     * a permutation of 0..n-1 in this pattern's order
+     */
+    public int[] order(int n) {
+        int[] keys = new int[n];
+        switch (this) {
+            case SEQUENTIAL:
+                for (int i = 0; i < n; i++) {
+                    keys[i] = i;
+                }
+                break;
+            case RANDOM:
+                for (int i = 0; i < n; i++) {
+                    keys[i] = i;
+                }
+                Random random = new Random(42);
+                for (int i = n - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = tmp;
+                }
+                break;
+            case ADVERSARIAL:
+                int low = 0, high = n - 1;
+                for (int i = 0; i < n; i++) {
+                    keys[i] = (i & 1) == 0 ? low++ : high--;
+                }
+                break;
+        }
+        return keys;
+    }
+}
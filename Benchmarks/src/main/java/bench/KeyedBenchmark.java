@@ -0,0 +1,102 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * insert / delete / search / keysToArray on a tree of the given size, built in the given key order. <br>
+ * The tree holds the even keys 2*p for every p in the pattern, so inserts use the absent odd keys 2*p+1
+ * (taken in the same pattern order) and deletes remove existing even keys.
+ * Mutations are measured as single-shot batches of BATCH operations, and the tree is restored to its
+ * original key set before every batch, so each measurement runs against a tree of the requested size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class KeyedBenchmark {
+
+    static final int BATCH = 256;
+    static final String INFO = "info";
+
+    @Param({"AVLTree", "ArrayAVLTree", "OffHeapAVLTree", "ConcurrentAVLTree"})
+    public String impl;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param
+    public KeyPattern pattern;
+
+    private KeyedStructure tree;
+    private int[] order;
+    private int searchCursor;
+    private int inserted;
+    private int deleted;
+
+    @Setup(Level.Trial)
+    public void build() {
+        tree = Structures.keyed(impl);
+        order = pattern.order(size);
+        for (int p : order) {
+            tree.insert(2 * p, INFO);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void restore() {
+        for (int j = 0; j < inserted; j++) {
+            tree.delete(2 * order[j] + 1);
+        }
+        for (int j = 0; j < deleted; j++) {
+            tree.insert(2 * order[j], INFO);
+        }
+        inserted = 0;
+        deleted = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 50, batchSize = BATCH)
+    @Measurement(iterations = 50, batchSize = BATCH)
+    @OperationsPerInvocation(BATCH)
+    public int insert() {
+        return tree.insert(2 * order[inserted++] + 1, INFO);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 50, batchSize = BATCH)
+    @Measurement(iterations = 50, batchSize = BATCH)
+    @OperationsPerInvocation(BATCH)
+    public int delete() {
+        return tree.delete(2 * order[deleted++]);
+    }
+
+    @Benchmark
+    public String search() {
+        int p = order[searchCursor];
+        searchCursor = searchCursor + 1 == size ? 0 : searchCursor + 1;
+        return tree.search(2 * p);
+    }
+
+    @Benchmark
+    public int[] keysToArray() {
+        return tree.keysToArray();
+    }
+}
@@ -0,0 +1,14 @@
+package bench;
+
+/**
+ * The operations the benchmarks run against a search tree keyed by int (AVLTree and its variants). <br>
+ * JMH refuses benchmark classes in the default package, so the trees are reached through adapters
+ * (see Structures) which live in the default package next to the trees.
+ */
+public interface KeyedStructure {
+    int insert(int k, String i);
+    int delete(int k);
+    String search(int k);
+    int[] keysToArray();
+    int size();
+}
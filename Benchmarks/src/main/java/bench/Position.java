@@ -0,0 +1,25 @@
+package bench;
+
+/**
+ * Where in a list an indexed operation is applied.
+ */
+public enum Position {
+    HEAD, MIDDLE, TAIL;
+
+    /**
+     * @param size current number of items in the list
+     * @param forInsert true for insert (the tail is index size), false for retrieve and delete (the tail is size - 1)
+     * @return
+     * the index to operate on
+     */
+    public int index(int size, boolean forInsert) {
+        switch (this) {
+            case HEAD:
+                return 0;
+            case MIDDLE:
+                return size / 2;
+            default:
+                return forInsert ? size : size - 1;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bench;
+
+/**
+ * Creates the structures under benchmark by name. <br>
+ * An implementation named X is reached through the default-package class XAdapter,
+ * which implements KeyedStructure or IndexedStructure.
+ */
+public final class Structures {
+
+    private Structures() { }
+
+    /**
+     * @param impl simple name of the tree class, e.g. "AVLTree"
+     * @return
+     * a new empty tree of the given implementation
+     */
+    public static KeyedStructure keyed(String impl) {
+        return (KeyedStructure) newAdapter(impl, null);
+    }
+
+    /**
+     * @param impl simple name of the list class, e.g. "TreeList"
+     * @param capacity the max number of items the list will hold (used by fixed size lists)
+     * @return
+     * a new empty list of the given implementation
+     */
+    public static IndexedStructure indexed(String impl, int capacity) {
+        return (IndexedStructure) newAdapter(impl, capacity);
+    }
+
+    private static Object newAdapter(String impl, Integer capacity) {
+        try {
+            Class<?> adapter = Class.forName(impl + "Adapter");
+            if (capacity == null) {
+                return adapter.getDeclaredConstructor().newInstance();
+            }
+            return adapter.getDeclaredConstructor(int.class).newInstance(capacity);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("no benchmark adapter for " + impl, e);
+        }
+    }
+}
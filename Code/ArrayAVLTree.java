@@ -0,0 +1,76 @@
+/**
+ * An AVL Tree which keeps its nodes in parallel primitive arrays instead of AVLNode objects. <br>
+ * a node is an index to the arrays: keys, heights, sizes, left, right and parent,
+ * so the info String is the only reference per entry. <br>
+ * The algorithms (and the AVLTree contract) are in IndexedAVLTree.
+ */
+public class ArrayAVLTree extends IndexedAVLTree {
+	/**
+	 * initial capacity of the arrays when none is given
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] keys;
+	private int[] heights;
+	private int[] sizes;
+	private int[] left;
+	private int[] right;
+	private int[] parent;
+	private String[] infos;
+
+	/**
+	 * default constructor- initialize an empty tree with a default capacity
+	 */
+	public ArrayAVLTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * initialize an empty tree with room for initialCapacity nodes before the arrays grow.
+	 * @param initialCapacity expected number of nodes
+	 */
+	public ArrayAVLTree(int initialCapacity) {
+		int capacity = Math.max(initialCapacity, 1);
+		this.keys = new int[capacity];
+		this.heights = new int[capacity];
+		this.sizes = new int[capacity];
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.parent = new int[capacity];
+		this.infos = new String[capacity];
+	}
+
+	int key(int node) { return this.keys[node]; }
+	void setKey(int node, int key) { this.keys[node] = key; }
+	String info(int node) { return this.infos[node]; }
+	void setInfo(int node, String info) { this.infos[node] = info; }
+	int height(int node) { return this.heights[node]; }
+	void setHeight(int node, int height) { this.heights[node] = height; }
+	int subtreeSize(int node) { return this.sizes[node]; }
+	void setSubtreeSize(int node, int size) { this.sizes[node] = size; }
+	int left(int node) { return this.left[node]; }
+	void setLeft(int node, int left) { this.left[node] = left; }
+	int right(int node) { return this.right[node]; }
+	void setRight(int node, int right) { this.right[node] = right; }
+	int parent(int node) { return this.parent[node]; }
+	void setParent(int node, int parent) { this.parent[node] = parent; }
+
+	/**
+	 * doubles the capacity of all the arrays until they can hold the given number of slots
+	 * @param slots number of slots needed
+	 */
+	void ensureCapacity(int slots) {
+		if (slots <= this.keys.length) {
+			return;
+		}
+		int capacity = Math.max(slots, this.keys.length * 2);
+		this.keys = java.util.Arrays.copyOf(this.keys, capacity);
+		this.heights = java.util.Arrays.copyOf(this.heights, capacity);
+		this.sizes = java.util.Arrays.copyOf(this.sizes, capacity);
+		this.left = java.util.Arrays.copyOf(this.left, capacity);
+		this.right = java.util.Arrays.copyOf(this.right, capacity);
+		this.parent = java.util.Arrays.copyOf(this.parent, capacity);
+		this.infos = java.util.Arrays.copyOf(this.infos, capacity);
+	}
+
+}
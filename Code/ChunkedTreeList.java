@@ -0,0 +1,430 @@
+
+/**
+ * An implementation of a ADT List by a ranked AVL tree of chunks: every node of the tree holds a CircularList of up to
+ * chunkCapacity consecutive items, and the sizes kept in the nodes count items (not nodes). <br>
+ *     Implements methods: retrieve(index), insert(index, key, val), delete(index). <br>
+ * A B-tree like hybrid of TreeList and CircularList: the tree has only about n / B nodes (B = chunkCapacity), so
+ * retrieve walks down O(log(n/B)) nodes and then reads one array cell, and insert / delete cost O(log(n/B) + B) -
+ * the shift inside a chunk is over adjacent array cells. Per item only the Item and an array cell are kept. <br>
+ * A full chunk is split in two halves before an insert into it, and a chunk which falls below a quarter full is
+ * merged into a neighbour it fits in (an empty chunk is always removed).
+ */
+public class ChunkedTreeList {
+
+    /**
+     * the chunk capacity of new ChunkedTreeList()
+     */
+    public static final int DEFAULT_CHUNK_CAPACITY = 256;
+
+    private final int chunkCapacity;
+    /**
+     * root of the ranked AVL tree of the chunks, null if the list is empty
+     */
+    private Chunk root;
+
+    /**
+     * Constructor of ChunkedTreeList class- an empty list with chunks of DEFAULT_CHUNK_CAPACITY items.
+     */
+    public ChunkedTreeList() {
+        this(DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * Constructor of ChunkedTreeList class- an empty list.
+     * @param chunkCapacity the max number of items in a chunk (64 - 512 suit most uses)
+     * @throws IllegalArgumentException if chunkCapacity is smaller than 4
+     */
+    public ChunkedTreeList(int chunkCapacity) {
+        if (chunkCapacity < 4) {
+            throw new IllegalArgumentException("chunk capacity must be at least 4: " + chunkCapacity);
+        }
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    /**
+     * Get Item from the list which is in place (starts from 0) of the given index.
+     * @param i index of requested item in the list
+     * @return
+     * Item which is in the ith position if it exists in the list. <br>
+     * Otherwise, returns null
+     */
+    public Item retrieve(int i) {
+        if (i < 0 || i >= size()) {
+            return null;
+        }
+        Chunk chunk = this.root;
+        while (true) {
+            int leftSize = size(chunk.left);
+            if (i < leftSize) {
+                chunk = chunk.left;
+            }
+            else if (i < leftSize + chunk.items.size()) {
+                return chunk.items.retrieve(i - leftSize);
+            }
+            else { // the index i is in the right subtree
+                i -= leftSize + chunk.items.size();
+                chunk = chunk.right;
+            }
+        }
+    }
+
+    /**
+     * inserts an item to the ith position in list  with key k and  info s.
+     * @param i index to be filled with the item inserted <br>
+     * @param k the key of the item inserted <br>
+     * @param s the value of the item inserted
+     * @return
+     * -1 if i smaller then 0 or i greater then n, otherwise returns 0
+     * @implNote
+     * (1) walks down to the first chunk whose positions, its end included, contain i. at a boundary of two chunks
+     * that is the one higher in the tree: the former (appending to its end) if the latter is in its right subtree,
+     * the latter (inserting at its start) if the former is in its left subtree. either gives the same order. <br>
+     * (2) if the chunk is full, moves its upper half to a new chunk linked right after it (i at the boundary of the
+     * halves stays in the lower one) <br>
+     * (3) inserts into the chunk (a shift of at most B / 2 cells) and adds 1 to the sizes up to the root
+     */
+    public int insert(int i, int k, String s) {
+        if (i < 0 || i > size()) {
+            return -1;
+        }
+        if (this.root == null) {
+            this.root = new Chunk(this.chunkCapacity);
+        }
+        Chunk chunk = this.root;
+        while (true) {
+            int leftSize = size(chunk.left);
+            if (i < leftSize) {
+                chunk = chunk.left;
+            }
+            else if (i <= leftSize + chunk.items.size()) {
+                i -= leftSize;
+                break;
+            }
+            else {
+                i -= leftSize + chunk.items.size();
+                chunk = chunk.right;
+            }
+        }
+        if (chunk.items.size() == this.chunkCapacity) {
+            Chunk upper = splitChunk(chunk);
+            if (i > chunk.items.size()) {
+                i -= chunk.items.size();
+                chunk = upper;
+            }
+        }
+        chunk.items.insert(i, k, s);
+        addToPath(chunk, 1);
+        return 0;
+    }
+
+    /**
+     * deletes an item in the ith posittion from the list.
+     * @param i index of the item requested to be deleted
+     * @return
+     * returns -1 if i smaller then 0 or i greater then n-1, otherwise returns 0.
+     * @implNote
+     * deletes the item from its chunk and subtracts 1 from the sizes up to the root. then, if the chunk fell below a
+     * quarter of its capacity, merges it into its successor or predecessor when they fit in one chunk.
+     */
+    public int delete(int i) {
+        if (i < 0 || i >= size()) {
+            return -1;
+        }
+        Chunk chunk = this.root;
+        while (true) {
+            int leftSize = size(chunk.left);
+            if (i < leftSize) {
+                chunk = chunk.left;
+            }
+            else if (i < leftSize + chunk.items.size()) {
+                i -= leftSize;
+                break;
+            }
+            else {
+                i -= leftSize + chunk.items.size();
+                chunk = chunk.right;
+            }
+        }
+        chunk.items.delete(i);
+        addToPath(chunk, -1);
+        if (chunk.items.size() < this.chunkCapacity / 4) {
+            mergeChunk(chunk);
+        }
+        return 0;
+    }
+
+
+
+    // ----- helper methods ----
+
+    /**
+     * @return
+     * the number of items in the list
+     */
+    private int size() {
+        return size(this.root);
+    }
+
+    /**
+     * moves the upper half of a full chunk to a new chunk, linked as its successor in the tree.
+     * @param chunk a full chunk
+     * @return
+     * the new chunk
+     */
+    private Chunk splitChunk(Chunk chunk) {
+        Chunk upper = new Chunk(this.chunkCapacity);
+        int half = chunk.items.size() / 2;
+        chunk.items.moveTailTo(half, upper.items);
+        int moved = upper.items.size();
+        addToPath(chunk, -moved);
+        upper.size = moved;
+        Chunk parent;
+        if (chunk.right == null) {
+            parent = chunk;
+            chunk.right = upper;
+        }
+        else {
+            parent = minInSubTree(chunk.right);
+            parent.left = upper;
+        }
+        upper.parent = parent;
+        fixUp(parent, moved);
+        return upper;
+    }
+
+    /**
+     * merges a chunk which has few items with its successor, or else with its predecessor, if they fit in one chunk
+     * (the items of the latter move to the end of the former), and removes the emptied chunk.
+     * an empty chunk is removed even if it can't be merged.
+     * @param chunk the chunk
+     */
+    private void mergeChunk(Chunk chunk) {
+        Chunk next = successor(chunk);
+        if (next != null && chunk.items.size() + next.items.size() <= this.chunkCapacity) {
+            moveAll(next, chunk);
+            removeChunk(next);
+            return;
+        }
+        Chunk previous = predecessor(chunk);
+        if (previous != null && chunk.items.size() + previous.items.size() <= this.chunkCapacity) {
+            moveAll(chunk, previous);
+            removeChunk(chunk);
+            return;
+        }
+        if (chunk.items.size() == 0) {
+            removeChunk(chunk);
+        }
+    }
+
+    /**
+     * moves all the items of a chunk to the end of the chunk before it, and fixes the sizes.
+     * @param from the chunk to empty
+     * @param to the chunk right before it in the list
+     */
+    private void moveAll(Chunk from, Chunk to) {
+        int moved = from.items.size();
+        from.items.moveTailTo(0, to.items);
+        addToPath(from, -moved);
+        addToPath(to, moved);
+    }
+
+    /**
+     * unlinks an empty chunk from the tree. if it has two children, the items of its successor move into it
+     * and the (then empty) successor is unlinked instead - so the unlinked node always has at most one child,
+     * and no size changes.
+     * @param chunk an empty chunk
+     */
+    private void removeChunk(Chunk chunk) {
+        if (chunk.left != null && chunk.right != null) {
+            Chunk successor = minInSubTree(chunk.right);
+            int moved = successor.items.size();
+            addToPath(successor, -moved);
+            CircularList items = chunk.items;
+            chunk.items = successor.items;
+            successor.items = items; // the empty list
+            addToPath(chunk, moved);
+            chunk = successor;
+        }
+        Chunk parent = chunk.parent;
+        replaceChild(chunk, chunk.left != null ? chunk.left : chunk.right);
+        chunk.parent = chunk.left = chunk.right = null;
+        if (parent != null) {
+            fixUp(parent, 0);
+        }
+    }
+
+    /**
+     * adds delta to the size of a chunk and of its ancestors (items were added to / removed from it).
+     * @param chunk the chunk
+     * @param delta number of items added, negative if removed
+     */
+    private static void addToPath(Chunk chunk, int delta) {
+        for (Chunk c = chunk; c != null; c = c.parent) {
+            c.size += delta;
+        }
+    }
+
+    /**
+     * fixes the path from a chunk up to the root after a chunk was linked below it (sizeDelta - its items) or unlinked
+     * (sizeDelta 0, it was empty): sizes, heights and rotations - until the height of a subtree is as it was,
+     * and from there only the sizes (as TreeList.fixUp).
+     * @param chunk lowest chunk whose subtree changed
+     * @param sizeDelta number of items added to its subtree
+     */
+    private void fixUp(Chunk chunk, int sizeDelta) {
+        while (chunk != null) {
+            chunk.size += sizeDelta;
+            int oldHeight = chunk.height;
+            int bf = height(chunk.left) - height(chunk.right);
+            Chunk top = chunk;
+            if (bf == 2) {
+                if (height(chunk.left.left) < height(chunk.left.right)) {
+                    rotateLeft(chunk.left);
+                }
+                top = rotateRight(chunk);
+            }
+            else if (bf == -2) {
+                if (height(chunk.right.right) < height(chunk.right.left)) {
+                    rotateRight(chunk.right);
+                }
+                top = rotateLeft(chunk);
+            }
+            else {
+                chunk.height = 1 + Math.max(height(chunk.left), height(chunk.right));
+            }
+            if (top.height == oldHeight) {
+                if (sizeDelta != 0) {
+                    addToPath(top.parent, sizeDelta);
+                }
+                return;
+            }
+            chunk = top.parent;
+        }
+    }
+
+    /**
+     * rotates a chunk with its left child to the right
+     * @param chunk the chunk
+     * @return
+     * the left child, which took its place
+     */
+    private Chunk rotateRight(Chunk chunk) {
+        Chunk pivot = chunk.left;
+        chunk.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = chunk;
+        }
+        replaceChild(chunk, pivot);
+        pivot.right = chunk;
+        chunk.parent = pivot;
+        setHeightAndSizeByChildren(chunk);
+        setHeightAndSizeByChildren(pivot);
+        return pivot;
+    }
+
+    /**
+     * rotates a chunk with its right child to the left
+     * @param chunk the chunk
+     * @return
+     * the right child, which took its place
+     */
+    private Chunk rotateLeft(Chunk chunk) {
+        Chunk pivot = chunk.right;
+        chunk.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = chunk;
+        }
+        replaceChild(chunk, pivot);
+        pivot.left = chunk;
+        chunk.parent = pivot;
+        setHeightAndSizeByChildren(chunk);
+        setHeightAndSizeByChildren(pivot);
+        return pivot;
+    }
+
+    /**
+     * puts a chunk (or null) in the place of another chunk under its parent, or as the root
+     * @param chunk the chunk being replaced
+     * @param replacement the chunk taking its place
+     */
+    private void replaceChild(Chunk chunk, Chunk replacement) {
+        Chunk parent = chunk.parent;
+        if (parent == null) {
+            this.root = replacement;
+        }
+        else if (parent.left == chunk) {
+            parent.left = replacement;
+        }
+        else {
+            parent.right = replacement;
+        }
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
+    }
+
+    private static Chunk successor(Chunk chunk) {
+        if (chunk.right != null) {
+            return minInSubTree(chunk.right);
+        }
+        while (chunk.parent != null && chunk == chunk.parent.right) {
+            chunk = chunk.parent;
+        }
+        return chunk.parent;
+    }
+
+    private static Chunk predecessor(Chunk chunk) {
+        if (chunk.left != null) {
+            Chunk c = chunk.left;
+            while (c.right != null) {
+                c = c.right;
+            }
+            return c;
+        }
+        while (chunk.parent != null && chunk == chunk.parent.left) {
+            chunk = chunk.parent;
+        }
+        return chunk.parent;
+    }
+
+    private static Chunk minInSubTree(Chunk chunk) {
+        while (chunk.left != null) {
+            chunk = chunk.left;
+        }
+        return chunk;
+    }
+
+    private static void setHeightAndSizeByChildren(Chunk chunk) {
+        chunk.height = 1 + Math.max(height(chunk.left), height(chunk.right));
+        chunk.size = chunk.items.size() + size(chunk.left) + size(chunk.right);
+    }
+
+    private static int height(Chunk chunk) {
+        return chunk == null ? -1 : chunk.height;
+    }
+
+    private static int size(Chunk chunk) {
+        return chunk == null ? 0 : chunk.size;
+    }
+
+
+    /**
+     * a node of the tree: a chunk of consecutive items of the list
+     */
+    private static final class Chunk {
+        private CircularList items;
+        private Chunk parent;
+        private Chunk left;
+        private Chunk right;
+        private int height;
+        /**
+         * the number of items in the subtree of the chunk
+         */
+        private int size;
+
+        Chunk(int capacity) {
+            this.items = new CircularList(capacity);
+        }
+    }
+
+}
@@ -1,8 +1,11 @@
 
 /**
  * An implementation of a ADT List by a Circular List which holds Items: (key-info) in a circular array
- * (defined as an array in size maxLen, with a pointer to the start, and len which is the actual size of the array). <br>
- * Implement methods: retrieve(index), insert(index, key, val), delete(index)
+ * (defined as an array with a pointer to the start, and len which is the actual size of the array). <br>
+ * Implement methods: retrieve(index), insert(index, key, val), delete(index) <br>
+ * The length of the array is a power of 2, so a position in it is computed with a mask instead of a division.
+ * The list either holds up to maxLen items (new CircularList(maxLen)), or grows - doubling its array when it is full,
+ * and optionally halving it when it is a quarter full - which costs amortized O(1) per insert / delete.
  */
 
 
@@ -12,9 +15,20 @@
      */
     private Item[] arr;
     /**
-     * the size of the array - updated in insert and delete
+     * the max number of items in the list (MAX_CAPACITY if it grows)
      */
      private int maxLen;
+    /**
+     * the length of the array arr minus 1 (it is a power of 2) - position = (start + index) & mask
+     */
+    private int mask;
+    /**
+     * whether the array grows when it is full, and whether it shrinks when it is a quarter full
+     * (never below its initial length)
+     */
+    private final boolean growable;
+    private final boolean shrinkable;
+    private final int minCapacity;
     /**
      * the actual size of the array - how many items are there. Will be given to us.
      */
@@ -25,20 +39,61 @@
      */
     private int start;
 
+    /**
+     * the largest length of the array (the largest power of 2 an array can have)
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+    /**
+     * the initial length of the array of new CircularList()
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
     /**
      * Constructor of CircularList class. <br>
      * for every instance of the class building an array arr. <br>
-     * fields: maxLen- array's length, arr - java's array, <br> len - num of items in the list,
-     * start - index of the first item.
-     * @param maxLen the length of the array - max number of items can be added to the list
+     * fields: maxLen- max number of items, arr - java's array (of length maxLen rounded up to a power of 2), <br>
+     * len - num of items in the list, start - index of the first item. <br>
+     * the array is allocated at once, and the rounding may make it up to 2x maxLen (16M slots for maxLen 10^7).
+     * @param maxLen the max number of items can be added to the list
+     * @throws IllegalArgumentException if maxLen is negative or greater than MAX_CAPACITY
      */
 	public CircularList (int maxLen) {
-		this.maxLen = maxLen;
-		this.arr = new Item[maxLen];
-		this.len = 0;
-		this.start = 0;
+		this(maxLen, maxLen, false, false);
 	}
 
+    /**
+     * Constructor of a CircularList which grows as items are added (and never shrinks), starting with an array
+     * of DEFAULT_CAPACITY.
+     */
+    public CircularList() {
+        this(MAX_CAPACITY, DEFAULT_CAPACITY, true, false);
+    }
+
+    /**
+     * Constructor of a CircularList which grows as items are added.
+     * @param initialCapacity the initial length of the array (rounded up to a power of 2)
+     * @param shrinkable whether to halve the array when a quarter of it is used (down to the initial length)
+     * @throws IllegalArgumentException if initialCapacity is negative or greater than MAX_CAPACITY
+     */
+    public CircularList(int initialCapacity, boolean shrinkable) {
+        this(MAX_CAPACITY, initialCapacity, true, shrinkable);
+    }
+
+    private CircularList(int maxLen, int capacity, boolean growable, boolean shrinkable) {
+        if (capacity < 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException((growable ? "initial capacity" : "maxLen") + " must be between 0 and "
+                    + MAX_CAPACITY + ": " + capacity);
+        }
+        this.maxLen = maxLen;
+        this.arr = new Item[powerOfTwoAtLeast(capacity)];
+        this.mask = this.arr.length - 1;
+        this.growable = growable;
+        this.shrinkable = shrinkable;
+        this.minCapacity = this.arr.length;
+        this.len = 0;
+        this.start = 0;
+    }
+
 
  /**
   * Get Item from the list which is in place of the given index.
@@ -51,7 +106,7 @@
       if (! validateRetrieveAndDelete(i)) {
           return null;
       }
-      int pos = (this.start + i) % this.maxLen;
+      int pos = (this.start + i) & this.mask;
       return this.arr[pos];
   }
 
@@ -72,6 +127,7 @@
        if (! validateInsert(i)) {
            return -1;
        }
+       ensureCapacity(this.len + 1);
        Item item = new Item(k, s);
        if (i == 0) {
            insertAsFirst(item);
@@ -82,7 +138,7 @@
        else {
            if (isBetterToMoveBackInsert(i)) { // move back i element and change the start
                copyElementsInBackMoveInsert(i);
-               updateElementInIndex(i, item); // do it before updating new start
+               updateElementInIndex(i - 1, item); // do it before updating new start - then it is the ith
                updateStartInMovingBack();
            } else { // no need to change start
                copyElementsInForwardMoveInsert(i);
@@ -124,17 +180,119 @@
             else { // better to move forward
                 copyElementsInForwardMoveDelete(i);
                 this.arr[this.start] = null;
-                this.start = (this.start + 1) % this.maxLen;
+                this.start = (this.start + 1) & this.mask;
             }
            this.len--;
        }
         if(this.len == 0){
             this.start = 0;
         }
+        shrinkIfSparse();
 	   return 0;
    }
 
 
+   /**
+    * inserts items to the list from the ith position on, in their order: keys[j] (with info infos[j]) becomes the
+    * item in position i + j.
+    * @param i index to be filled with the first item inserted
+    * @param keys the keys of the items inserted
+    * @param infos infos[j] is the value of the item with key keys[j]
+    * @return
+    * -1 if i smaller then 0 or greater then n, the arrays aren't of the same length or the m items don't fit
+    * (n + m greater then maxLen), otherwise returns 0
+    * @implNote
+    * moves the smaller side (the i items before the index, or the n - i items from it) m places in one block move
+    * (see moveBlock), then fills the gap - O(m + min(i, n - i)), instead of m shifts of up to n/2 items.
+    */
+   public int insertAll(int i, int[] keys, String[] infos) {
+       int m = keys.length;
+       if (i < 0 || i > this.len || m != infos.length || m > this.maxLen - this.len) {
+           return -1;
+       }
+       if (m == 0) {
+           return 0;
+       }
+       ensureCapacity(this.len + m);
+       if (i < this.len - i) { // move the items before i back, the start moves back with them
+           moveBlock(0, -m, i);
+           this.start = (this.start - m) & this.mask;
+       }
+       else { // move the items from i forward
+           moveBlock(i, i + m, this.len - i);
+       }
+       for (int j = 0; j < m; j++) {
+           this.arr[getPosition(i + j)] = new Item(keys[j], infos[j]);
+       }
+       this.len += m;
+       return 0;
+   }
+
+   /**
+    * deletes the items in positions [from, to) from the list.
+    * @param from index of the first item deleted
+    * @param to index after the last item deleted
+    * @return
+    * -1 if from smaller then 0, to greater then n or from greater then to, otherwise returns 0
+    * @implNote
+    * moves the smaller side (the from items before the range, or the n - to items after it) over the range in
+    * one block move (see moveBlock), and clears the m cells it left - O(m + min(from, n - to)).
+    */
+   public int deleteRange(int from, int to) {
+       if (from < 0 || to > this.len || from > to) {
+           return -1;
+       }
+       int m = to - from;
+       if (m == 0) {
+           return 0;
+       }
+       if (from < this.len - to) { // move the items before the range forward, the start moves forward with them
+           moveBlock(0, m, from);
+           clearBlock(0, m);
+           this.start = getPosition(m);
+       }
+       else { // move the items after the range back
+           moveBlock(to, from, this.len - to);
+           clearBlock(this.len - m, m);
+       }
+       this.len -= m;
+       if (this.len == 0) {
+           this.start = 0;
+       }
+       shrinkIfSparse();
+       return 0;
+   }
+
+
+   /**
+    * @return
+    * the number of items in the list (used by ChunkedTreeList)
+    */
+   int size() {
+       return this.len;
+   }
+
+   /**
+    * moves the items from index from on to the end of another list, keeping their order (used by ChunkedTreeList
+    * to split and merge its chunks). the items themselves are moved, not copied.
+    * @param from index of the first item to move
+    * @param target the list to append them to, with room for them
+    */
+   void moveTailTo(int from, CircularList target) {
+       int count = this.len - from;
+       target.ensureCapacity(target.len + count);
+       for (int j = 0; j < count; j++) {
+           target.arr[target.getPosition(target.len + j)] = this.arr[getPosition(from + j)];
+       }
+       target.len += count;
+       clearBlock(from, count);
+       this.len = from;
+       if (this.len == 0) {
+           this.start = 0;
+       }
+   }
+
+
 // ----- helper methods -------
 
     /**
@@ -214,21 +372,18 @@
 
     /**
      * help function for insert.
-     * moves all items before the index and include one step back in the array arr.
-     * @param index index of the item that its and his all previous items needs to move back one step.
+     * moves all items before the index (not include) one step back in the array arr.
+     * @param index index of the item that all its previous items needs to move back one step.
      */
     private void copyElementsInBackMoveInsert(int index) {
         int currPos = this.start;
-        int countBeforeIndexAndInclude = getCountBeforeIndexAndInclude(index);
+        int countBeforeIndex = getCountBeforeIndex(index);
         int newPos;
-        while (countBeforeIndexAndInclude > 0) {
-            newPos = currPos - 1;
-            if (newPos == -1) {
-                newPos = this.maxLen - 1;
-            }
+        while (countBeforeIndex > 0) {
+            newPos = (currPos - 1) & this.mask;
             arr[newPos] = arr[currPos];
-            currPos = (currPos + 1) % this.maxLen;
-            countBeforeIndexAndInclude--;
+            currPos = (currPos + 1) & this.mask;
+            countBeforeIndex--;
         }
     }
 
@@ -239,15 +394,12 @@
      */
     private void copyElementsInForwardMoveInsert(int index) {
         int countAfterIndexAndInclude = getCountAfterIndexAndInclude(index);
-        int currPos = (getPosition(index) + countAfterIndexAndInclude - 1) % this.maxLen; // the currPos will be the last position in the block of the elements which will move forward
+        int currPos = (getPosition(index) + countAfterIndexAndInclude - 1) & this.mask; // the currPos will be the last position in the block of the elements which will move forward
         int newPos;
         while (countAfterIndexAndInclude > 0) {
-            newPos = (currPos + 1) % this.maxLen;
+            newPos = (currPos + 1) & this.mask;
             arr[newPos] = arr[currPos];
-            currPos--;
-            if (currPos == -1) {
-                currPos = this.maxLen - 1;
-            }
+            currPos = (currPos - 1) & this.mask;
             countAfterIndexAndInclude--;
         }
 
@@ -263,15 +415,9 @@
         int currPos;
         int newPos = getPosition(index);
         while (countBeforeIndex > 0) {
-            currPos = (newPos - 1);
-            if (currPos == -1) {
-                currPos = this.maxLen - 1;
-            }
+            currPos = (newPos - 1) & this.mask;
             arr[newPos] = arr[currPos];
-            newPos  = newPos -1;
-            if (newPos == -1) {
-                newPos = this.maxLen - 1;
-            }
+            newPos = currPos;
             countBeforeIndex--;
         }
     }
@@ -283,15 +429,12 @@
      */
     private void copyElementsInBackMoveDelete(int index){
         int countAfterIndex = getCountAfterIndex(index);
-        int currPos =(getPosition(index) +1) % this.maxLen;
+        int currPos = (getPosition(index) + 1) & this.mask;
         int newPos;
         while (countAfterIndex > 0) {
-            newPos = (currPos - 1);
-            if (newPos == -1) {
-                newPos = this.maxLen - 1;
-            }
+            newPos = (currPos - 1) & this.mask;
             arr[newPos] = arr[currPos];
-            currPos = (currPos + 1) % this.maxLen;
+            currPos = (currPos + 1) & this.mask;
             countAfterIndex--;
         }
     }
@@ -300,7 +443,7 @@
      * updates start field after moving items one step back in the array arr.
      */
     private void updateStartInMovingBack() {
-       this.start = this.start == 0 ? this.maxLen - 1 : this.start - 1;
+       this.start = (this.start - 1) & this.mask;
     }
 
     /**
@@ -352,7 +495,106 @@
      * position of the item in the array arr of the index- index of the list.
      */
     private int getPosition(int index) {
-       return (this.start + index) % this.maxLen;
+       return (this.start + index) & this.mask; // also for a negative index, the array length is a power of 2
+    }
+
+    /**
+     * makes room for the given number of items: if the array is shorter, and the list grows, doubles it until
+     * it is long enough (see resize). a list which doesn't grow is already long enough for maxLen items.
+     * @param capacity the number of items the array needs to hold
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.arr.length && this.growable) {
+            int newCapacity = this.arr.length;
+            while (newCapacity < capacity) {
+                newCapacity <<= 1;
+            }
+            resize(newCapacity);
+        }
+    }
+
+    /**
+     * halves the array of a shrinkable list while a quarter of it (or less) is used, down to its initial length -
+     * a quarter and not a half, so alternating inserts and deletes at the border don't resize every time.
+     */
+    private void shrinkIfSparse() {
+        if (this.shrinkable) {
+            int newCapacity = this.arr.length;
+            while (newCapacity > this.minCapacity && this.len <= newCapacity / 4) {
+                newCapacity >>= 1;
+            }
+            if (newCapacity != this.arr.length) {
+                resize(newCapacity);
+            }
+        }
+    }
+
+    /**
+     * moves the items to a new array of the given length, in their order from its cell 0 (in at most two
+     * System.arraycopy pieces - the ring may wrap around the end of the old array).
+     * @param capacity length of the new array, a power of 2 which is at least len
+     */
+    private void resize(int capacity) {
+        Item[] newArr = new Item[capacity];
+        int first = Math.min(this.len, this.arr.length - this.start);
+        System.arraycopy(this.arr, this.start, newArr, 0, first);
+        System.arraycopy(this.arr, 0, newArr, first, this.len - first);
+        this.arr = newArr;
+        this.mask = capacity - 1;
+        this.start = 0;
+    }
+
+    /**
+     * @param n a non negative number, at most MAX_CAPACITY
+     * @return
+     * the smallest power of 2 which is at least n (and at least 1)
+     */
+    private static int powerOfTwoAtLeast(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * copies count items of the list from index src to index dst (an index may be negative or past len - it is
+     * taken around the ring), in contiguous pieces by System.arraycopy. <br>
+     * the blocks may overlap: moving forward copies from the end, moving back from the start.
+     * @param src index of the first item to copy
+     * @param dst index to copy it to
+     * @param count number of items to copy
+     */
+    private void moveBlock(int src, int dst, int count) {
+        if (dst > src) {
+            while (count > 0) {
+                int srcEnd = getPosition(src + count - 1), dstEnd = getPosition(dst + count - 1);
+                int n = Math.min(count, Math.min(srcEnd, dstEnd) + 1); // up to the start of the array
+                System.arraycopy(this.arr, srcEnd - n + 1, this.arr, dstEnd - n + 1, n);
+                count -= n;
+            }
+        }
+        else {
+            while (count > 0) {
+                int srcPos = getPosition(src), dstPos = getPosition(dst);
+                int n = Math.min(count, this.arr.length - Math.max(srcPos, dstPos)); // up to the end of the array
+                System.arraycopy(this.arr, srcPos, this.arr, dstPos, n);
+                src += n;
+                dst += n;
+                count -= n;
+            }
+        }
+    }
+
+    /**
+     * sets count cells from index index (taken around the ring) to null, in contiguous pieces.
+     * @param index index of the first cell
+     * @param count number of cells
+     */
+    private void clearBlock(int index, int count) {
+        while (count > 0) {
+            int pos = getPosition(index);
+            int n = Math.min(count, this.arr.length - pos);
+            java.util.Arrays.fill(this.arr, pos, pos + n, null);
+            index += n;
+            count -= n;
+        }
     }
 
     /**
@@ -371,7 +613,7 @@
      */
     private void deleteFirst(){
        this.arr[start] = null;
-      this.start = (this.start +1) % this.maxLen;
+      this.start = (this.start + 1) & this.mask;
       this.len--;
     }
     /**
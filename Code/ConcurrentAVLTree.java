@@ -0,0 +1,148 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe AVL Tree in which search, min, max, size (and keysToArray, infoToArray) never lock. <br>
+ * The tree is a sequence of PersistentAVLTree versions: insert and delete copy the O(logn) nodes on the path from
+ * the root (path copying), rebalance the copies, and publish the new version with a single volatile write.
+ * Readers take the current version and work on it undisturbed, so they never wait for a writer and scale with the
+ * number of cores - and snapshot() hands such a version out, for a consistent view of the tree in O(1). <br>
+ * Writers are serialized by a lock. insert and delete keep AVLTree's contract and rotation counts.
+ */
+public class ConcurrentAVLTree {
+
+	/**
+	 * the current version of the tree - replaced as a whole by every successful insert / delete
+	 */
+	private volatile PersistentAVLTree current = new PersistentAVLTree();
+	/**
+	 * serializes the writers
+	 */
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	/**
+	 * default constructor- initialize an empty tree
+	 */
+	public ConcurrentAVLTree() { }
+
+	/**
+	 * returns true if and only if the tree is empty (doesn't contain any node)
+	 * @return
+	 * true- if the tree is empty, else- false
+	 */
+	public boolean empty() {
+		return this.current.empty();
+	}
+
+	/**
+	 * returns the info of an item with key k if it exists in the tree. doesn't lock.
+	 * @param k key of item being searched.
+	 * @return
+	 * the info of the item with key k, otherwise returns null
+	 */
+	public String search(int k) {
+		return this.current.search(k);
+	}
+
+	/**
+	 * inserts an item with key k and info i to the AVL tree.
+	 * @param k key of item inserted
+	 * @param i value of item inserted
+	 * @return
+	 * the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(int k, String i) {
+		this.writeLock.lock();
+		try {
+			PersistentAVLTree.Node root = this.current.root();
+			int[] rotations = new int[1];
+			PersistentAVLTree.Node newRoot = PersistentAVLTree.insert(root, k, i, rotations);
+			if (newRoot == root) { // key already exists
+				return -1;
+			}
+			this.current = new PersistentAVLTree(newRoot);
+			return rotations[0];
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * deletes an item with key k from the binary tree, if it is there
+	 * @param k key of item requested to be deleted.
+	 * @return
+	 * the number of rebalancing operations, or 0 if no rebalancing operations were needed,
+	 * or -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(int k) {
+		this.writeLock.lock();
+		try {
+			PersistentAVLTree.Node root = this.current.root();
+			int[] rotations = new int[1];
+			PersistentAVLTree.Node newRoot = PersistentAVLTree.delete(root, k, rotations);
+			if (newRoot == root) { // key not found
+				return -1;
+			}
+			this.current = new PersistentAVLTree(newRoot);
+			return rotations[0];
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * returns the current version of the tree, in O(1) and without locking. it shares its nodes with the tree,
+	 * and never changes - later inserts and deletes make new versions.
+	 * @return
+	 * an immutable snapshot of the tree
+	 */
+	public PersistentAVLTree snapshot() {
+		return this.current;
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the smallest key in the tree, <br>
+	 * or null if the tree is empty. doesn't lock.
+	 */
+	public String min() {
+		return this.current.min();
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty. doesn't lock.
+	 */
+	public String max() {
+		return this.current.max();
+	}
+
+	/**
+	 * @return
+	 * Returns a sorted array which contains all keys in the tree (as of one version), <br>
+	 * or an empty array if the tree is empty. doesn't lock.
+	 */
+	public int[] keysToArray() {
+		return this.current.keysToArray();
+	}
+
+	/**
+	 * @return
+	 * Returns an array which contains all info in the tree (as of one version),
+	 * sorted by their respective keys,<br>
+	 * or an empty array if the tree is empty. doesn't lock.
+	 */
+	public String[] infoToArray() {
+		return this.current.infoToArray();
+	}
+
+	/**
+	 * @return
+	 * Returns the number of nodes in the tree. doesn't lock.
+	 */
+	public int size() {
+		return this.current.size();
+	}
+
+}
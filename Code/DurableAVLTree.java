@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An AVLTree whose mutations are durable: every insert / delete is applied in memory and appended to a
+ * write-ahead log (WriteAheadLog), and open recovers the tree from the last snapshot and the log after it. <br>
+ * insert and delete return at once with a future of their result, which completes when the mutation is committed
+ * by the sync policy - so a writer can pipeline many mutations and wait only on the last future
+ * (the log commits them in order, so its completion means all the ones before it are committed too). <br>
+ * Thread safe: operations are serialized by a lock, which is held only in memory - never while waiting for the disk.
+ */
+public class DurableAVLTree extends DurableStore {
+
+	private AVLTree tree = new AVLTree();
+
+	private DurableAVLTree(Path directory, WriteAheadLog.SyncPolicy policy) {
+		super(directory, policy);
+	}
+
+	/**
+	 * opens the tree stored in directory (an empty tree if the directory is new), recovering it from its
+	 * last snapshot and log.
+	 * @param directory directory of the snapshots and logs of the tree
+	 * @param policy when mutations are considered committed
+	 * @return
+	 * the recovered tree
+	 * @throws IOException if the files can't be read, or the snapshot is corrupt
+	 */
+	public static DurableAVLTree open(Path directory, WriteAheadLog.SyncPolicy policy) throws IOException {
+		DurableAVLTree tree = new DurableAVLTree(directory, policy);
+		tree.recover();
+		return tree;
+	}
+
+	/**
+	 * inserts an item with key k and info i (see AVLTree.insert) and logs it.
+	 * @param k key of item inserted
+	 * @param i value of item inserted
+	 * @return
+	 * a future of the number of rebalancing operations, which completes when the insert is committed. <br>
+	 * a future of -1 at once if an item with key k already exists (nothing is logged).
+	 * a failed future at once if the log failed or is closed (nothing changes).
+	 */
+	public CompletableFuture<Integer> insert(int k, String i) {
+		this.lock.lock();
+		try {
+			CompletableFuture<Integer> rejected = rejected();
+			if (rejected != null) {
+				return rejected;
+			}
+			int result = this.tree.insert(k, i);
+			if (result == -1) {
+				return CompletableFuture.completedFuture(-1);
+			}
+			return logged(result, WriteAheadLog.Record.insert(k, i));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * deletes the item with key k (see AVLTree.delete) and logs it.
+	 * @param k key of item requested to be deleted.
+	 * @return
+	 * a future of the number of rebalancing operations, which completes when the delete is committed. <br>
+	 * a future of -1 at once if an item with key k was not found (nothing is logged).
+	 * a failed future at once if the log failed or is closed (nothing changes).
+	 */
+	public CompletableFuture<Integer> delete(int k) {
+		this.lock.lock();
+		try {
+			CompletableFuture<Integer> rejected = rejected();
+			if (rejected != null) {
+				return rejected;
+			}
+			int result = this.tree.delete(k);
+			if (result == -1) {
+				return CompletableFuture.completedFuture(-1);
+			}
+			return logged(result, WriteAheadLog.Record.delete(k));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @param k key of item being searched.
+	 * @return
+	 * the info of the item with key k, otherwise returns null
+	 * (mutations are visible before they are committed)
+	 */
+	public String search(int k) {
+		this.lock.lock();
+		try {
+			return this.tree.search(k);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * the info of the item with the smallest key in the tree, or null if the tree is empty
+	 */
+	public String min() {
+		this.lock.lock();
+		try {
+			return this.tree.min();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * the info of the item with the largest key in the tree, or null if the tree is empty
+	 */
+	public String max() {
+		this.lock.lock();
+		try {
+			return this.tree.max();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * a sorted array which contains all keys in the tree
+	 */
+	public int[] keysToArray() {
+		this.lock.lock();
+		try {
+			return this.tree.keysToArray();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * an array which contains all info in the tree, sorted by their respective keys
+	 */
+	public String[] infoToArray() {
+		this.lock.lock();
+		try {
+			return this.tree.infoToArray();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * the number of nodes in the tree
+	 */
+	public int size() {
+		this.lock.lock();
+		try {
+			return this.tree.size();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	void loadSnapshot(ReadableByteChannel in) throws IOException {
+		this.tree = AVLTree.readSnapshot(in);
+	}
+
+	void writeSnapshot(WritableByteChannel out) throws IOException {
+		this.tree.writeSnapshot(out, true);
+	}
+
+	void apply(WriteAheadLog.Record record) {
+		if (record.op == WriteAheadLog.OP_INSERT) {
+			this.tree.insert(record.key, record.info);
+		}
+		else if (record.op == WriteAheadLog.OP_DELETE) {
+			this.tree.delete(record.key);
+		}
+	}
+}
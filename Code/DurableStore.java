@@ -0,0 +1,225 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * The durability shared by DurableAVLTree and DurableTreeList: a directory with snapshots (snapshot.N)
+ * and write-ahead logs (wal.N) of generations N. <br>
+ * Every mutation is applied in memory and appended to the current log (under one lock, so the log has the order
+ * of the mutations), and returns the log's future - unless the log already failed or is closed, then it fails
+ * without changing the structure. checkpoint() starts the log of the next generation, writes a snapshot of the
+ * structure as that generation and then deletes the older files. <br>
+ * The directory is forced after a log is created and after a snapshot is renamed into place, so those entries are
+ * durable before the files of the previous generation are deleted. <br>
+ * Recovery loads the newest complete snapshot and replays the logs of its generation and above, in order - so a
+ * crash at any point of a checkpoint loses nothing that was committed.
+ */
+abstract class DurableStore implements Closeable {
+	private static final String SNAPSHOT = "snapshot.", LOG = "wal.";
+
+	private final Path directory;
+	private final WriteAheadLog.SyncPolicy policy;
+	/**
+	 * serializes the mutations and reads of the structure, and its checkpoints
+	 */
+	final ReentrantLock lock = new ReentrantLock();
+	private WriteAheadLog log;
+	private long generation;
+
+	DurableStore(Path directory, WriteAheadLog.SyncPolicy policy) {
+		this.directory = directory;
+		this.policy = policy;
+	}
+
+	/**
+	 * loads the structure from a snapshot
+	 * @param in the snapshot
+	 * @throws IOException if reading fails or the snapshot is corrupt
+	 */
+	abstract void loadSnapshot(ReadableByteChannel in) throws IOException;
+
+	/**
+	 * writes a snapshot of the structure
+	 * @param out channel of the snapshot file
+	 * @throws IOException if writing fails
+	 */
+	abstract void writeSnapshot(WritableByteChannel out) throws IOException;
+
+	/**
+	 * applies a logged mutation to the structure (while recovering)
+	 * @param record the mutation
+	 */
+	abstract void apply(WriteAheadLog.Record record);
+
+	/**
+	 * loads the newest snapshot of the directory (created if it doesn't exist), replays the logs after it,
+	 * and opens the log to append to.
+	 * @throws IOException if the files can't be read
+	 */
+	void recover() throws IOException {
+		Files.createDirectories(this.directory);
+		long snapshotGeneration = -1;
+		long lastLogGeneration = -1;
+		try (Stream<Path> files = Files.list(this.directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				String name = file.getFileName().toString();
+				long snapshot = generationOf(name, SNAPSHOT), log = generationOf(name, LOG);
+				snapshotGeneration = Math.max(snapshotGeneration, snapshot);
+				lastLogGeneration = Math.max(lastLogGeneration, log);
+			}
+		}
+		if (snapshotGeneration >= 0) {
+			try (FileChannel in = FileChannel.open(file(SNAPSHOT, snapshotGeneration), StandardOpenOption.READ)) {
+				loadSnapshot(in);
+			}
+		}
+		this.generation = Math.max(snapshotGeneration, 0);
+		for (long g = this.generation; g < lastLogGeneration; g++) { // logs of older generations, read only
+			if (Files.exists(file(LOG, g))) {
+				WriteAheadLog.open(file(LOG, g), WriteAheadLog.SyncPolicy.NONE, this::apply).close();
+			}
+		}
+		this.generation = Math.max(this.generation, lastLogGeneration);
+		this.log = WriteAheadLog.open(file(LOG, this.generation), this.policy, this::apply);
+		syncDirectory();
+		deleteOlderThan(snapshotGeneration);
+	}
+
+	/**
+	 * checks the log before a mutation is applied (call while holding the lock), so a mutation the log would reject
+	 * doesn't change the structure. a failure after the check fails the mutation's future, as it fails the records
+	 * queued before it.
+	 * @return
+	 * a failed future if the log failed or is closed, else null
+	 */
+	CompletableFuture<Integer> rejected() {
+		IOException rejection = this.log.rejection();
+		return rejection == null ? null : CompletableFuture.failedFuture(rejection);
+	}
+
+	/**
+	 * appends a mutation which was applied (call while holding the lock)
+	 * @param result the result of the mutation
+	 * @param record the mutation
+	 * @return
+	 * a future of the result, which completes when the mutation is committed
+	 */
+	CompletableFuture<Integer> logged(int result, WriteAheadLog.Record record) {
+		return this.log.append(record).thenApply(ignored -> result);
+	}
+
+	/**
+	 * writes a snapshot of the structure and drops the logs before it, so recovery replays only later mutations.
+	 * mutations wait while the snapshot is written.
+	 * @throws IOException if writing fails (the previous snapshot and logs stay valid)
+	 */
+	public void checkpoint() throws IOException {
+		this.lock.lock();
+		try {
+			long next = this.generation + 1;
+			WriteAheadLog nextLog = WriteAheadLog.open(file(LOG, next), this.policy, record -> { });
+			try {
+				syncDirectory(); // the new log exists before the snapshot it follows does
+				this.log.close(); // commits what is queued
+			} catch (IOException e) {
+				nextLog.close();
+				throw e;
+			}
+			this.log = nextLog;
+			this.generation = next;
+			Path temp = this.directory.resolve(SNAPSHOT + next + ".tmp");
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE)) {
+				writeSnapshot(out);
+				out.force(true);
+			}
+			Files.move(temp, file(SNAPSHOT, next), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			syncDirectory();
+			deleteOlderThan(next);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * waits until every mutation so far is committed.
+	 * @throws IOException if the log failed
+	 */
+	public void sync() throws IOException {
+		WriteAheadLog log;
+		this.lock.lock();
+		try {
+			log = this.log;
+		} finally {
+			this.lock.unlock();
+		}
+		log.sync();
+	}
+
+	/**
+	 * commits the queued mutations and closes the log. the structure can't be changed afterwards.
+	 * @throws IOException if the last commit fails
+	 */
+	public void close() throws IOException {
+		this.lock.lock();
+		try {
+			this.log.close();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	// -------- helper funcs ---------------
+
+	private Path file(String prefix, long generation) {
+		return this.directory.resolve(prefix + generation);
+	}
+
+	/**
+	 * @return
+	 * the generation of a file named prefix + generation, or -1 if the name is of another form
+	 */
+	private static long generationOf(String name, String prefix) {
+		if (!name.startsWith(prefix)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * forces the directory, so the files created and renamed in it survive a crash
+	 */
+	private void syncDirectory() throws IOException {
+		try (FileChannel channel = FileChannel.open(this.directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * deletes the snapshots and logs of generations before the given one (and unfinished snapshots)
+	 */
+	private void deleteOlderThan(long generation) throws IOException {
+		try (Stream<Path> files = Files.list(this.directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				String name = file.getFileName().toString();
+				long g = Math.max(generationOf(name, SNAPSHOT), generationOf(name, LOG));
+				if ((g >= 0 && g < generation) || (name.startsWith(SNAPSHOT) && name.endsWith(".tmp"))) {
+					Files.delete(file);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A TreeList whose mutations are durable, the same way as DurableAVLTree: insert / delete are applied in memory,
+ * appended to a write-ahead log, and return a future which completes when they are committed. <br>
+ * Thread safe: operations are serialized by a lock, which is never held while waiting for the disk.
+ */
+public class DurableTreeList extends DurableStore {
+
+	private TreeList list = new TreeList();
+
+	private DurableTreeList(Path directory, WriteAheadLog.SyncPolicy policy) {
+		super(directory, policy);
+	}
+
+	/**
+	 * opens the list stored in directory (an empty list if the directory is new), recovering it from its
+	 * last snapshot and log.
+	 * @param directory directory of the snapshots and logs of the list
+	 * @param policy when mutations are considered committed
+	 * @return
+	 * the recovered list
+	 * @throws IOException if the files can't be read, or the snapshot is corrupt
+	 */
+	public static DurableTreeList open(Path directory, WriteAheadLog.SyncPolicy policy) throws IOException {
+		DurableTreeList list = new DurableTreeList(directory, policy);
+		list.recover();
+		return list;
+	}
+
+	/**
+	 * @param i index of requested item in the list
+	 * @return
+	 * Item which is in the ith position if it exists in the list, otherwise null
+	 * (mutations are visible before they are committed)
+	 */
+	public Item retrieve(int i) {
+		this.lock.lock();
+		try {
+			return this.list.retrieve(i);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * inserts an item to the ith position in the list (see TreeList.insert) and logs it.
+	 * @param i index to be filled with the item inserted
+	 * @param k the key of the item inserted
+	 * @param s the value of the item inserted
+	 * @return
+	 * a future of 0, which completes when the insert is committed. <br>
+	 * a future of -1 at once if i is smaller than 0 or greater than n (nothing is logged).
+	 * a failed future at once if the log failed or is closed (nothing changes).
+	 */
+	public CompletableFuture<Integer> insert(int i, int k, String s) {
+		this.lock.lock();
+		try {
+			CompletableFuture<Integer> rejected = rejected();
+			if (rejected != null) {
+				return rejected;
+			}
+			int result = this.list.insert(i, k, s);
+			if (result == -1) {
+				return CompletableFuture.completedFuture(-1);
+			}
+			return logged(result, WriteAheadLog.Record.listInsert(i, k, s));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * deletes the item in the ith position of the list (see TreeList.delete) and logs it.
+	 * @param i index of the item requested to be deleted
+	 * @return
+	 * a future of 0, which completes when the delete is committed. <br>
+	 * a future of -1 at once if i is smaller than 0 or greater than n-1 (nothing is logged).
+	 * a failed future at once if the log failed or is closed (nothing changes).
+	 */
+	public CompletableFuture<Integer> delete(int i) {
+		this.lock.lock();
+		try {
+			CompletableFuture<Integer> rejected = rejected();
+			if (rejected != null) {
+				return rejected;
+			}
+			int result = this.list.delete(i);
+			if (result == -1) {
+				return CompletableFuture.completedFuture(-1);
+			}
+			return logged(result, WriteAheadLog.Record.listDelete(i));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	void loadSnapshot(ReadableByteChannel in) throws IOException {
+		this.list = TreeList.readSnapshot(in);
+	}
+
+	void writeSnapshot(WritableByteChannel out) throws IOException {
+		this.list.writeSnapshot(out, true);
+	}
+
+	void apply(WriteAheadLog.Record record) {
+		if (record.op == WriteAheadLog.OP_LIST_INSERT) {
+			this.list.insert(record.index, record.key, record.info);
+		}
+		else if (record.op == WriteAheadLog.OP_LIST_DELETE) {
+			this.list.delete(record.index);
+		}
+	}
+}
@@ -0,0 +1,507 @@
+/**
+ * The AVL algorithms of a tree whose nodes are int indices into some node storage, instead of AVLNode objects. <br>
+ * a node has a key, info, height, size and left, right and parent links (indices too, NIL for none).
+ * Slots of deleted nodes are chained in a free-list (through the left link) and reused by the next inserts. <br>
+ * Has the same contract as AVLTree: search, insert, delete in O(logn), min, max, size in O(1),
+ * and insert/delete return the same number of rebalancing operations. <br>
+ * Subclasses only decide where the fields are kept (ArrayAVLTree - heap arrays, OffHeapAVLTree - direct memory).
+ */
+public abstract class IndexedAVLTree {
+	/**
+	 * the "null" index - marks a missing child / parent / node
+	 */
+	static final int NIL = -1;
+
+	/**
+	 * index of the root node, NIL if the tree is empty
+	 */
+	int root = NIL;
+	/**
+	 * index of the node with the minimum key in the tree
+	 */
+	int minNode = NIL;
+	/**
+	 * index of the node with the maximum key in the tree
+	 */
+	int maxNode = NIL;
+	/**
+	 * head of the list of freed slots, chained through the left link
+	 */
+	int freeHead = NIL;
+	/**
+	 * number of slots which were ever handed out - slots from this index and on were never used
+	 */
+	int used;
+
+	// -------- node storage ---------------
+
+	abstract int key(int node);
+	abstract void setKey(int node, int key);
+	abstract String info(int node);
+	/**
+	 * sets the info of a node. null is set when a node is freed, so the storage can release the old info.
+	 */
+	abstract void setInfo(int node, String info);
+	/**
+	 * moves the info of node from to node to (used by delete when a node takes its successor's item).
+	 * storages which keep the info outside the heap override it to move the reference instead of the content.
+	 */
+	void moveInfo(int from, int to) {
+		setInfo(to, info(from));
+	}
+	abstract int height(int node);
+	abstract void setHeight(int node, int height);
+	abstract int subtreeSize(int node);
+	abstract void setSubtreeSize(int node, int size);
+	abstract int left(int node);
+	abstract void setLeft(int node, int left);
+	abstract int right(int node);
+	abstract void setRight(int node, int right);
+	abstract int parent(int node);
+	abstract void setParent(int node, int parent);
+	/**
+	 * makes sure the storage can hold the slots 0..slots-1
+	 * @param slots number of slots needed
+	 */
+	abstract void ensureCapacity(int slots);
+	/**
+	 * called by insert and delete before they change anything, for the storage's own upkeep
+	 * (OffHeapAVLTree compacts its info arena here, so a failed compaction leaves no half done update)
+	 */
+	void beforeUpdate() { }
+
+	// -------- public operations ---------------
+
+	/**
+	 * returns true if and only if the tree is empty (doesn't contain any node)
+	 * @return
+	 * true- if the tree is empty, else- false
+	 */
+	public boolean empty() {
+		return this.root == NIL;
+	}
+
+	/**
+	 * returns the info of an item with key k if it exists in the tree
+	 * @param k key of item being searched.
+	 * @return
+	 * the info of the item with key k, otherwise returns null
+	 */
+	public String search(int k) {
+		int node = getNodeByKey(k);
+		if (node != NIL) {
+			return info(node);
+		}
+		return null;
+	}
+
+	/**
+	 * inserts an item with key k and info i to the AVL tree.
+	 * @param k key of item inserted
+	 * @param i value of item inserted
+	 * @return
+	 * the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * -1 if an item with key k already exists in the tree.
+	 * @implNote
+	 * same as AVLTree.insert: finds the place, links a new node (from the free-list if possible),
+	 * updates minNode / maxNode by its key and fixes heights, sizes and rotations on the path to the root.
+	 */
+	public int insert(int k, String i) {
+		beforeUpdate();
+		int y = NIL;
+		int x = this.root;
+		while (x != NIL) {
+			int xKey = key(x);
+			if (xKey == k) { // key already exists
+				return -1;
+			}
+			y = x;
+			x = k < xKey ? left(x) : right(x);
+		}
+		int newNode = allocNode(k, i);
+		setParent(newNode, y);
+		if (y == NIL) {
+			this.root = newNode; // the tree was empty
+		}
+		else if (k < key(y)) {
+			setLeft(y, newNode);
+		}
+		else {
+			setRight(y, newNode);
+		}
+
+		if (this.minNode == NIL || k < key(this.minNode)) { // rotations don't move keys between slots
+			this.minNode = newNode;
+		}
+		if (this.maxNode == NIL || k > key(this.maxNode)) {
+			this.maxNode = newNode;
+		}
+
+		return fixHeightAndSizeAndGetNumOfRotations(y);
+	}
+
+	/**
+	 * deletes an item with key k from the binary tree, if it is there
+	 * @param k key of item requested to be deleted.
+	 * @return
+	 * the number of rebalancing operations, or 0 if no rebalancing operations were needed,
+	 * or -1 if an item with key k was not found in the tree.
+	 * @implNote
+	 * a node with two children takes the key and info of its successor, and the successor's slot is
+	 * the one unlinked - so the fixing starts from the same place as in AVLTree.delete.
+	 */
+	public int delete(int k) {
+		beforeUpdate();
+		int node = getNodeByKey(k);
+		if (node == NIL) {
+			return -1;
+		}
+		if (node == this.minNode) { // the min and max have at most one child, so their own slot is the one unlinked
+			this.minNode = getSuccessor(node);
+		}
+		if (node == this.maxNode) {
+			this.maxNode = getPredecessor(node);
+		}
+		if (left(node) != NIL && right(node) != NIL) { // has two children
+			int successor = getMinInSubTree(right(node));
+			if (successor == this.maxNode) { // its key moves to node
+				this.maxNode = node;
+			}
+			setKey(node, key(successor));
+			moveInfo(successor, node);
+			node = successor; // has no left child
+		}
+		int child = left(node) != NIL ? left(node) : right(node);
+		int nodeParent = parent(node);
+		if (child != NIL) {
+			setParent(child, nodeParent);
+		}
+		if (nodeParent == NIL) {
+			this.root = child;
+		}
+		else if (left(nodeParent) == node) {
+			setLeft(nodeParent, child);
+		}
+		else {
+			setRight(nodeParent, child);
+		}
+		freeNode(node);
+
+		return fixHeightAndSizeAndGetNumOfRotations(nodeParent);
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the smallest key in the tree, <br>
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		return this.minNode == NIL ? null : info(this.minNode);
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() {
+		return this.maxNode == NIL ? null : info(this.maxNode);
+	}
+
+	/**
+	 * @return
+	 * Returns a sorted array which contains all keys in the tree, <br>
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] result = new int[size()];
+		int i = 0;
+		for (int node = this.minNode; node != NIL; node = getSuccessor(node)) {
+			result[i++] = key(node);
+		}
+		return result;
+	}
+
+	/**
+	 * @return
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,<br>
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		String[] result = new String[size()];
+		int i = 0;
+		for (int node = this.minNode; node != NIL; node = getSuccessor(node)) {
+			result[i++] = info(node);
+		}
+		return result;
+	}
+
+	/**
+	 * @return
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return this.root == NIL ? 0 : subtreeSize(this.root);
+	}
+
+
+	// -------- helper funcs ---------------
+
+	/**
+	 * takes a slot for a new leaf - a freed one if there is, otherwise the next never used slot (growing the storage if needed)
+	 * @param key key of the new node
+	 * @param info info of the new node
+	 * @return
+	 * index of the new node
+	 */
+	private int allocNode(int key, String info) {
+		int node;
+		if (this.freeHead != NIL) {
+			node = this.freeHead;
+			this.freeHead = left(node);
+		}
+		else {
+			ensureCapacity(this.used + 1);
+			node = this.used++;
+		}
+		setKey(node, key);
+		setInfo(node, info);
+		setHeight(node, 0);
+		setSubtreeSize(node, 1);
+		setLeft(node, NIL);
+		setRight(node, NIL);
+		return node;
+	}
+
+	/**
+	 * returns a slot to the free-list
+	 * @param node index of the unlinked node
+	 */
+	private void freeNode(int node) {
+		setInfo(node, null); // let the storage release the info
+		setLeft(node, this.freeHead);
+		this.freeHead = node;
+	}
+
+	/**
+	 * get a node by its key
+	 * @param key key of the node being searched
+	 * @return
+	 * the index of the node with the given key, NIL if it doesn't exist
+	 */
+	int getNodeByKey(int key) {
+		int node = this.root;
+		while (node != NIL) {
+			int nodeKey = key(node);
+			if (nodeKey == key) {
+				return node;
+			}
+			node = key < nodeKey ? left(node) : right(node);
+		}
+		return NIL;
+	}
+
+	/**
+	 * @param origin root of a subtree (may be NIL)
+	 * @return
+	 * the node with the min key in the subtree, NIL if it is empty
+	 */
+	int getMinInSubTree(int origin) {
+		if (origin == NIL) {
+			return NIL;
+		}
+		while (left(origin) != NIL) {
+			origin = left(origin);
+		}
+		return origin;
+	}
+
+	/**
+	 * @param origin root of a subtree (may be NIL)
+	 * @return
+	 * the node with the max key in the subtree, NIL if it is empty
+	 */
+	int getMaxInSubTree(int origin) {
+		if (origin == NIL) {
+			return NIL;
+		}
+		while (right(origin) != NIL) {
+			origin = right(origin);
+		}
+		return origin;
+	}
+
+	/**
+	 * @param node a node in the tree
+	 * @return
+	 * the node with the next key, NIL if node is the max
+	 */
+	int getSuccessor(int node) {
+		if (right(node) != NIL) {
+			return getMinInSubTree(right(node));
+		}
+		int p = parent(node);
+		while (p != NIL && right(p) == node) {
+			node = p;
+			p = parent(p);
+		}
+		return p;
+	}
+
+	/**
+	 * @param node a node in the tree
+	 * @return
+	 * the node with the previous key, NIL if node is the min
+	 */
+	int getPredecessor(int node) {
+		if (left(node) != NIL) {
+			return getMaxInSubTree(left(node));
+		}
+		int p = parent(node);
+		while (p != NIL && left(p) == node) {
+			node = p;
+			p = parent(p);
+		}
+		return p;
+	}
+
+	/**
+	 * fixes heights, sizes, and does rotations from the given node and above in its path to the root
+	 * @param node node to start fixing from (and include), may be NIL
+	 * @return
+	 * number of rotations done
+	 */
+	private int fixHeightAndSizeAndGetNumOfRotations(int node) {
+		int sumRotations = 0;
+		while (node != NIL) {
+			updateSizeAndHeight(node);
+			sumRotations += checkAndCommitRotation(node);
+			node = parent(node);
+		}
+		return sumRotations;
+	}
+
+	/**
+	 * updates the size and height of node by its children
+	 * @param node the node to update
+	 */
+	private void updateSizeAndHeight(int node) {
+		int l = left(node);
+		int r = right(node);
+		setSubtreeSize(node, 1 + (l == NIL ? 0 : subtreeSize(l)) + (r == NIL ? 0 : subtreeSize(r)));
+		setHeight(node, 1 + Math.max(heightOf(l), heightOf(r)));
+	}
+
+	/**
+	 * @param node index of a node, may be NIL
+	 * @return
+	 * height of the node, -1 for NIL
+	 */
+	private int heightOf(int node) {
+		return node == NIL ? -1 : height(node);
+	}
+
+	/**
+	 * @param node index of a node
+	 * @return
+	 * the Balance Factor of the node
+	 */
+	private int getBF(int node) {
+		return heightOf(left(node)) - heightOf(right(node));
+	}
+
+	/**
+	 * checks for a node if needs rotation, if does - commits them (same cases as AVLTree.checkAndCommitRotation).
+	 * @param node to check if its avl criminal.
+	 * @return
+	 * returns how many rotations were made.
+	 */
+	private int checkAndCommitRotation(int node) {
+		int bf = getBF(node);
+		if (bf == 2) {
+			if (getBF(left(node)) >= 0) { // equals 0 in delete
+				rotateRight(node);
+				return 1;
+			}
+			rotateLeft(left(node));
+			rotateRight(node);
+			return 2;
+		}
+		if (bf == -2) {
+			if (getBF(right(node)) <= 0) {
+				rotateLeft(node);
+				return 1;
+			}
+			rotateRight(right(node));
+			rotateLeft(node);
+			return 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * commits a rotation to the right
+	 * @param x the node needs a rotation to the right.
+	 */
+	private void rotateRight(int x) {
+		int y = left(x);
+		int yRight = right(y);
+		setLeft(x, yRight); // turn y's right subtree into x's left subtree
+		if (yRight != NIL) {
+			setParent(yRight, x);
+		}
+		replaceChild(x, y);
+		setRight(y, x);
+		setParent(x, y);
+		setHeightAndSizeOnRotation(x, y);
+	}
+
+	/**
+	 * commits a rotation to the left
+	 * @param x the node needs a rotation to the left.
+	 */
+	private void rotateLeft(int x) {
+		int y = right(x);
+		int yLeft = left(y);
+		setRight(x, yLeft); // turn y's left subtree into x's right subtree
+		if (yLeft != NIL) {
+			setParent(yLeft, x);
+		}
+		replaceChild(x, y);
+		setLeft(y, x);
+		setParent(x, y);
+		setHeightAndSizeOnRotation(x, y);
+	}
+
+	/**
+	 * puts newChild in the place of x under x's parent (or as the root)
+	 * @param x the node being replaced
+	 * @param newChild the node that takes its place
+	 */
+	private void replaceChild(int x, int newChild) {
+		int xParent = parent(x);
+		setParent(newChild, xParent);
+		if (xParent == NIL) { // means x was the root
+			this.root = newChild;
+		}
+		else if (left(xParent) == x) {
+			setLeft(xParent, newChild);
+		}
+		else {
+			setRight(xParent, newChild);
+		}
+	}
+
+	/**
+	 * sets the heights and sizes of the participants nodes in a rotation.
+	 * @param wasParent node which used to be the parent and now is newParent's child
+	 * @param newParent node which used to be wasParent's child and now is its parent
+	 */
+	private void setHeightAndSizeOnRotation(int wasParent, int newParent) {
+		setHeight(newParent, height(wasParent));
+		setSubtreeSize(newParent, subtreeSize(wasParent));
+		updateSizeAndHeight(wasParent);
+	}
+
+}
@@ -0,0 +1,463 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent AVL Tree whose pages are memory-mapped from files, so reopening a tree only maps it back
+ * (no inserts), and search, min, max, keysToArray are served straight from the mapping. <br>
+ * The layout is OffHeapAVLTree's: the node records are in pages of the given file (after two header slots),
+ * the info arena is in the same path + ".info" (+ "." + generation, after the arena was compacted). All numbers
+ * are little endian, so a file can be opened on any machine. <br>
+ * Durability by shadow paging: a header holds the tree fields and the table of the file places of the node pages.
+ * The first write to a node page after a flush copies it to a free place in the file and writes there, so the pages
+ * of the flushed tree are never changed. The info arena is append only (compaction writes a new generation file).
+ * flush() forces the written pages, then writes the header to the slot of the older one, with a higher sequence
+ * number and a checksum. open maps the valid header with the highest sequence - the tree as of the last flush,
+ * whatever happened to the file after it (e.g. a crash). <br>
+ * A flush costs the pages written since the previous one (each node page is copied once), so mutations
+ * should be batched between flushes. <br>
+ * The arena is compacted at the start of an insert / delete, before the tree changes - if the compaction fails,
+ * they throw UncheckedIOException and the tree stays as it was.
+ */
+public class MappedAVLTree extends OffHeapAVLTree implements Closeable {
+	/**
+	 * offsets of the header fields. the checksum covers the bytes from H_SEQUENCE to the end of the page table.
+	 */
+	private static final int H_MAGIC = 0, H_VERSION = 4, H_NODE_BYTES = 8, H_NODE_PAGE_SHIFT = 12, H_VALUE_PAGE_SHIFT = 16,
+			H_CHECKSUM = 20, H_SEQUENCE = 24, H_ROOT = 32, H_MIN = 36, H_MAX = 40, H_FREE_HEAD = 44, H_USED = 48,
+			H_PAGES = 52, H_VALUE_END = 56, H_GARBAGE = 64, H_VALUE_GENERATION = 72, H_PAGE_TABLE = 80;
+	/**
+	 * the largest number of node pages (node indices are non negative ints)
+	 */
+	static final int MAX_NODE_PAGES = 1 << (31 - NODE_PAGE_SHIFT);
+	/**
+	 * bytes of a header slot (fields and a full page table, rounded up to 4KB). the file starts with two slots.
+	 */
+	static final int HEADER_BYTES = (H_PAGE_TABLE + Integer.BYTES * MAX_NODE_PAGES + 4095) & ~4095;
+	static final int NODE_PAGE_BYTES = NODES_PER_PAGE * NODE_BYTES;
+	static final int MAGIC = 0x41564C54; // "AVLT"
+	static final int VERSION = 2;
+	static final ByteOrder FILE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private final Path nodeFile;
+	private final FileChannel nodeChannel;
+	private FileChannel valueChannel;
+	private final MappedByteBuffer[] headers = new MappedByteBuffer[2];
+	/**
+	 * index of the header slot of the last flush, and its sequence number
+	 */
+	private int activeHeader;
+	private long sequence;
+	/**
+	 * pageTable[i] - the place in the file of node page i. written[i] - true if page i was written since the last flush
+	 * (so it is already in a place of its own).
+	 */
+	private int[] pageTable = new int[0];
+	private boolean[] written = new boolean[0];
+	/**
+	 * number of page places in the file, the places no page uses (freePlaces[0..freeCount-1]),
+	 * and the places of the flushed pages which were copied - they are free once the next flush is done
+	 */
+	private int places;
+	private int[] freePlaces = new int[0];
+	private int freeCount;
+	private int[] releasedPlaces = new int[0];
+	private int releasedCount;
+	/**
+	 * generation of the info file in use, and of the info file and arena end as of the last flush
+	 */
+	private long valueGeneration;
+	private long flushedValueGeneration;
+	private long flushedValueEnd;
+	/**
+	 * true if the tree was changed since the last flush
+	 */
+	private boolean dirty;
+
+	private MappedAVLTree(Path nodeFile, FileChannel nodeChannel) throws IOException {
+		this.nodeFile = nodeFile;
+		this.nodeChannel = nodeChannel;
+		for (int i = 0; i < 2; i++) {
+			this.headers[i] = nodeChannel.map(FileChannel.MapMode.READ_WRITE, (long) i * HEADER_BYTES, HEADER_BYTES);
+			this.headers[i].order(FILE_ORDER);
+		}
+	}
+
+	/**
+	 * opens the tree stored in file (and its info file), or creates an empty one if file doesn't exist.
+	 * @param file path of the node file
+	 * @return
+	 * the tree as of its last flush, ready for use
+	 * @throws IOException if the files can't be opened, or aren't a tree of this version
+	 */
+	public static MappedAVLTree open(Path file) throws IOException {
+		boolean exists = Files.exists(file) && Files.size(file) > 0;
+		if (exists && Files.size(file) < 2L * HEADER_BYTES) {
+			throw new IOException(file + " is not a tree file of this version");
+		}
+		FileChannel nodeChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedAVLTree tree = null;
+		try {
+			tree = new MappedAVLTree(file, nodeChannel);
+			if (exists) {
+				tree.load();
+			}
+			else {
+				tree.valueChannel = openValueFile(valueFile(file, 0));
+				tree.writeHeader(tree.headers[0], 1);
+				tree.headers[0].force();
+				tree.sequence = 1;
+				syncDirectory(file);
+			}
+			return tree;
+		} catch (IOException | RuntimeException e) {
+			nodeChannel.close();
+			if (tree != null && tree.valueChannel != null) {
+				tree.valueChannel.close();
+			}
+			throw e;
+		}
+	}
+
+	public int insert(int k, String i) {
+		this.dirty = true;
+		return super.insert(k, i);
+	}
+
+	public int delete(int k) {
+		this.dirty = true;
+		return super.delete(k);
+	}
+
+	/**
+	 * writes all changes since the last flush to the disk. when it returns, open will see the tree as it is now.
+	 * @throws IOException if writing fails
+	 */
+	public void flush() throws IOException {
+		if (!this.dirty) {
+			return;
+		}
+		for (int i = 0; i < this.nodePages.length; i++) {
+			if (this.written[i]) {
+				((MappedByteBuffer) this.nodePages[i]).force();
+			}
+		}
+		boolean newValueFile = this.valueGeneration != this.flushedValueGeneration;
+		int firstValuePage = newValueFile ? 0 : (int) (this.flushedValueEnd >>> VALUE_PAGE_SHIFT);
+		for (int i = firstValuePage; i < this.valuePages.length; i++) {
+			((MappedByteBuffer) this.valuePages[i]).force();
+		}
+		this.nodeChannel.force(true); // the length of the files
+		this.valueChannel.force(true);
+		if (newValueFile) {
+			syncDirectory(this.nodeFile);
+		}
+		int next = 1 - this.activeHeader;
+		writeHeader(this.headers[next], this.sequence + 1);
+		this.headers[next].force();
+		this.activeHeader = next;
+		this.sequence++;
+
+		for (int i = 0; i < this.releasedCount; i++) {
+			addFreePlace(this.releasedPlaces[i]);
+		}
+		this.releasedCount = 0;
+		Arrays.fill(this.written, false);
+		if (newValueFile) {
+			Files.deleteIfExists(valueFile(this.nodeFile, this.flushedValueGeneration));
+			this.flushedValueGeneration = this.valueGeneration;
+		}
+		this.flushedValueEnd = this.valueEnd;
+		this.dirty = false;
+	}
+
+	/**
+	 * flushes the tree and closes its files. the tree can't be used afterwards.
+	 * @throws IOException if writing fails
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			this.nodeChannel.close();
+			this.valueChannel.close();
+		}
+	}
+
+	/**
+	 * maps a new node page to a free place of the file (zeroed, if the place was used before)
+	 */
+	ByteBuffer newNodePage(int pageIndex) {
+		if (pageIndex >= this.pageTable.length) {
+			int length = Math.max(pageIndex + 1, this.pageTable.length * 2);
+			this.pageTable = Arrays.copyOf(this.pageTable, length);
+			this.written = Arrays.copyOf(this.written, length);
+		}
+		boolean reused = this.freeCount > 0;
+		int place = takeFreePlace();
+		ByteBuffer page = mapPlace(place);
+		if (reused) {
+			for (int offset = 0; offset < NODE_PAGE_BYTES; offset += Long.BYTES) {
+				page.putLong(offset, 0);
+			}
+		}
+		this.pageTable[pageIndex] = place;
+		this.written[pageIndex] = true;
+		return page;
+	}
+
+	/**
+	 * copies the page to a free place of the file on its first write after a flush
+	 */
+	ByteBuffer writablePage(int node) {
+		int pageIndex = node >>> NODE_PAGE_SHIFT;
+		if (!this.written[pageIndex]) {
+			int place = takeFreePlace();
+			ByteBuffer copy = mapPlace(place);
+			copy.put(0, this.nodePages[pageIndex], 0, NODE_PAGE_BYTES);
+			if (this.releasedCount == this.releasedPlaces.length) {
+				this.releasedPlaces = Arrays.copyOf(this.releasedPlaces, Math.max(8, this.releasedCount * 2));
+			}
+			this.releasedPlaces[this.releasedCount++] = this.pageTable[pageIndex];
+			this.pageTable[pageIndex] = place;
+			this.nodePages[pageIndex] = copy;
+			this.written[pageIndex] = true;
+		}
+		return this.nodePages[pageIndex];
+	}
+
+	ByteBuffer newValuePage(int pageIndex) {
+		return map(this.valueChannel, (long) pageIndex << VALUE_PAGE_SHIFT, VALUE_PAGE_BYTES);
+	}
+
+	/**
+	 * compacts into the info file of the next generation. the file of the last flush stays until the next flush,
+	 * the file of an earlier compaction since the flush is deleted - nothing on the disk refers to it.
+	 * if the compaction fails, its new file is deleted and the tree keeps the old one.
+	 */
+	void compactArena() {
+		long oldGeneration = this.valueGeneration, generation = oldGeneration + 1;
+		Path file = valueFile(this.nodeFile, generation);
+		FileChannel oldChannel = this.valueChannel;
+		try {
+			this.valueChannel = openValueFile(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			super.compactArena();
+		} catch (RuntimeException e) { // the tree still uses the old arena - drop the new file
+			FileChannel newChannel = this.valueChannel;
+			this.valueChannel = oldChannel;
+			try {
+				newChannel.close();
+				Files.deleteIfExists(file);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+		this.valueGeneration = generation;
+		try {
+			oldChannel.close();
+			if (oldGeneration != this.flushedValueGeneration) {
+				Files.deleteIfExists(valueFile(this.nodeFile, oldGeneration));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// -------- helper funcs ---------------
+
+	private static ByteBuffer map(FileChannel channel, long position, int bytes) {
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, position, bytes).order(FILE_ORDER);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private ByteBuffer mapPlace(int place) {
+		return map(this.nodeChannel, 2L * HEADER_BYTES + (long) place * NODE_PAGE_BYTES, NODE_PAGE_BYTES);
+	}
+
+	/**
+	 * @return
+	 * a page place no page of the tree (and of the last flush) uses - a free one, or a new one at the end of the file
+	 */
+	private int takeFreePlace() {
+		if (this.freeCount > 0) {
+			return this.freePlaces[--this.freeCount];
+		}
+		return this.places++;
+	}
+
+	private void addFreePlace(int place) {
+		if (this.freeCount == this.freePlaces.length) {
+			this.freePlaces = Arrays.copyOf(this.freePlaces, Math.max(8, this.freeCount * 2));
+		}
+		this.freePlaces[this.freeCount++] = place;
+	}
+
+	/**
+	 * @param nodeFile path of the node file
+	 * @param generation number of compactions of the arena
+	 * @return
+	 * path of the info file of the generation
+	 */
+	private static Path valueFile(Path nodeFile, long generation) {
+		String name = nodeFile.getFileName() + ".info";
+		return nodeFile.resolveSibling(generation == 0 ? name : name + "." + generation);
+	}
+
+	private static FileChannel openValueFile(Path valueFile) throws IOException {
+		return FileChannel.open(valueFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * forces the directory of the file, so files created in it (and removed from it) survive a crash
+	 * @param file a file in the directory
+	 * @throws IOException if the directory can't be forced
+	 */
+	private static void syncDirectory(Path file) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * writes the fields of the tree, the page table and the checksum to a header slot (without forcing it)
+	 * @param header the header slot
+	 * @param sequence sequence number of the header
+	 */
+	private void writeHeader(ByteBuffer header, long sequence) {
+		int pages = this.nodePages.length;
+		header.putInt(H_MAGIC, MAGIC);
+		header.putInt(H_VERSION, VERSION);
+		header.putInt(H_NODE_BYTES, NODE_BYTES);
+		header.putInt(H_NODE_PAGE_SHIFT, NODE_PAGE_SHIFT);
+		header.putInt(H_VALUE_PAGE_SHIFT, VALUE_PAGE_SHIFT);
+		header.putLong(H_SEQUENCE, sequence);
+		header.putInt(H_ROOT, this.root);
+		header.putInt(H_MIN, this.minNode);
+		header.putInt(H_MAX, this.maxNode);
+		header.putInt(H_FREE_HEAD, this.freeHead);
+		header.putInt(H_USED, this.used);
+		header.putInt(H_PAGES, pages);
+		header.putLong(H_VALUE_END, this.valueEnd);
+		header.putLong(H_GARBAGE, this.garbageBytes);
+		header.putLong(H_VALUE_GENERATION, this.valueGeneration);
+		for (int i = 0; i < pages; i++) {
+			header.putInt(H_PAGE_TABLE + i * Integer.BYTES, this.pageTable[i]);
+		}
+		header.putInt(H_CHECKSUM, checksum(header, pages));
+	}
+
+	private static int checksum(ByteBuffer header, int pages) {
+		CRC32 crc = new CRC32();
+		crc.update(header.duplicate().position(H_SEQUENCE).limit(H_PAGE_TABLE + pages * Integer.BYTES));
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * @param header a header slot
+	 * @return
+	 * true if the slot holds a complete header of this version (a slot whose write was cut by a crash isn't)
+	 */
+	private static boolean isValid(ByteBuffer header) {
+		if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION
+				|| header.getInt(H_NODE_BYTES) != NODE_BYTES || header.getInt(H_NODE_PAGE_SHIFT) != NODE_PAGE_SHIFT
+				|| header.getInt(H_VALUE_PAGE_SHIFT) != VALUE_PAGE_SHIFT) {
+			return false;
+		}
+		int pages = header.getInt(H_PAGES);
+		return pages >= 0 && pages <= MAX_NODE_PAGES && header.getInt(H_CHECKSUM) == checksum(header, pages);
+	}
+
+	/**
+	 * reads the fields of the tree from the newest valid header, maps its pages and deletes the other info files
+	 * (of compactions which weren't flushed, or whose old file wasn't deleted yet)
+	 * @throws IOException if no header is valid, or the files are shorter than the header says
+	 */
+	private void load() throws IOException {
+		boolean[] valid = { isValid(this.headers[0]), isValid(this.headers[1]) };
+		if (!valid[0] && !valid[1]) {
+			throw new IOException(this.nodeFile + " is not a tree file of this version");
+		}
+		this.activeHeader = !valid[1] || (valid[0] && this.headers[0].getLong(H_SEQUENCE) > this.headers[1].getLong(H_SEQUENCE)) ? 0 : 1;
+		ByteBuffer header = this.headers[this.activeHeader];
+		this.sequence = header.getLong(H_SEQUENCE);
+		this.root = header.getInt(H_ROOT);
+		this.minNode = header.getInt(H_MIN);
+		this.maxNode = header.getInt(H_MAX);
+		this.freeHead = header.getInt(H_FREE_HEAD);
+		this.used = header.getInt(H_USED);
+		this.valueEnd = header.getLong(H_VALUE_END);
+		this.garbageBytes = header.getLong(H_GARBAGE);
+		this.valueGeneration = header.getLong(H_VALUE_GENERATION);
+		this.flushedValueGeneration = this.valueGeneration;
+		this.flushedValueEnd = this.valueEnd;
+
+		int pages = header.getInt(H_PAGES);
+		this.places = (int) Math.min(Integer.MAX_VALUE, (this.nodeChannel.size() - 2L * HEADER_BYTES) / NODE_PAGE_BYTES);
+		if (this.used > pages * NODES_PER_PAGE) {
+			throw new IOException(this.nodeFile + " is corrupt");
+		}
+		boolean[] inUse = new boolean[this.places];
+		this.pageTable = new int[pages];
+		this.written = new boolean[pages];
+		this.nodePages = new ByteBuffer[pages];
+		for (int i = 0; i < pages; i++) {
+			int place = header.getInt(H_PAGE_TABLE + i * Integer.BYTES);
+			if (place < 0 || place >= this.places || inUse[place]) {
+				throw new IOException(this.nodeFile + " is corrupt");
+			}
+			inUse[place] = true;
+			this.pageTable[i] = place;
+			this.nodePages[i] = mapPlace(place);
+		}
+		for (int place = this.places - 1; place >= 0; place--) {
+			if (!inUse[place]) {
+				addFreePlace(place);
+			}
+		}
+
+		Path valueFile = valueFile(this.nodeFile, this.valueGeneration);
+		if (!Files.exists(valueFile) || Files.size(valueFile) < this.valueEnd) {
+			throw new IOException(valueFile + " is missing or shorter than the tree needs");
+		}
+		this.valueChannel = FileChannel.open(valueFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (this.valueEnd > 0) {
+			int valuePageCount = (int) ((this.valueEnd + VALUE_PAGE_MASK) >>> VALUE_PAGE_SHIFT);
+			this.valuePages = new ByteBuffer[valuePageCount];
+			for (int i = 0; i < valuePageCount; i++) {
+				this.valuePages[i] = newValuePage(i);
+			}
+		}
+		if (this.valueGeneration != 0) { // a crash right after the flush of a compaction
+			Files.deleteIfExists(valueFile(this.nodeFile, 0));
+		}
+		try (DirectoryStream<Path> others = Files.newDirectoryStream(valueFile.toAbsolutePath().getParent(),
+				this.nodeFile.getFileName() + ".info.*")) {
+			for (Path stale : others) {
+				if (!stale.getFileName().equals(valueFile.getFileName())) {
+					Files.delete(stale);
+				}
+			}
+		}
+	}
+
+}
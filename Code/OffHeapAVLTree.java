@@ -0,0 +1,281 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An AVL Tree which keeps its nodes and infos outside the java heap, in direct ByteBuffers. <br>
+ * Node records (key, height, size, left, right, parent, info address) are 32 bytes each, in pages of
+ * NODES_PER_PAGE records. Infos are UTF-8 encoded, length prefixed, in an append only arena of
+ * VALUE_PAGE_BYTES pages. The heap holds only the page objects, so heap size and GC time don't grow with the tree. <br>
+ * The arena is compacted when more than half of it belongs to deleted / replaced infos. <br>
+ * The algorithms (and the AVLTree contract) are in IndexedAVLTree.
+ * Note that direct memory is limited by -XX:MaxDirectMemorySize (by default - the max heap size).
+ */
+public class OffHeapAVLTree extends IndexedAVLTree {
+	/**
+	 * byte size of a node record, and the offsets of its fields
+	 */
+	static final int NODE_BYTES = 32;
+	static final int KEY = 0, HEIGHT = 4, SIZE = 8, LEFT = 12, RIGHT = 16, PARENT = 20, INFO = 24;
+	/**
+	 * a node page holds 2^NODE_PAGE_SHIFT records
+	 */
+	static final int NODE_PAGE_SHIFT = 16;
+	static final int NODES_PER_PAGE = 1 << NODE_PAGE_SHIFT;
+	static final int NODE_PAGE_MASK = NODES_PER_PAGE - 1;
+	/**
+	 * a value page holds 2^VALUE_PAGE_SHIFT bytes of the info arena
+	 */
+	static final int VALUE_PAGE_SHIFT = 20;
+	static final int VALUE_PAGE_BYTES = 1 << VALUE_PAGE_SHIFT;
+	static final int VALUE_PAGE_MASK = VALUE_PAGE_BYTES - 1;
+	/**
+	 * the info field holds (arena address + 1), so 0 - the content of a fresh page - means a null info
+	 */
+	static final long NO_INFO = 0;
+
+	ByteBuffer[] nodePages = new ByteBuffer[0];
+	ByteBuffer[] valuePages = new ByteBuffer[0];
+	/**
+	 * the arena address where the next info is written
+	 */
+	long valueEnd;
+	/**
+	 * number of arena bytes which belong to infos that are no longer referenced
+	 */
+	long garbageBytes;
+
+	/**
+	 * default constructor- initialize an empty tree (no memory is taken until the first insert)
+	 */
+	public OffHeapAVLTree() { }
+
+	/**
+	 * @param pageIndex index of the new page
+	 * @return
+	 * a zeroed buffer for NODES_PER_PAGE node records
+	 */
+	ByteBuffer newNodePage(int pageIndex) {
+		return ByteBuffer.allocateDirect(NODES_PER_PAGE * NODE_BYTES).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * @param pageIndex index of the new page
+	 * @return
+	 * a buffer for VALUE_PAGE_BYTES bytes of the arena
+	 */
+	ByteBuffer newValuePage(int pageIndex) {
+		return ByteBuffer.allocateDirect(VALUE_PAGE_BYTES).order(ByteOrder.nativeOrder());
+	}
+
+	private ByteBuffer page(int node) {
+		return this.nodePages[node >>> NODE_PAGE_SHIFT];
+	}
+
+	/**
+	 * @param node index of the node
+	 * @return
+	 * the page of the node, before one of its fields is written
+	 * (MappedAVLTree moves the page to a new place in its file on the first write after a flush)
+	 */
+	ByteBuffer writablePage(int node) {
+		return page(node);
+	}
+
+	private static int offset(int node) {
+		return (node & NODE_PAGE_MASK) * NODE_BYTES;
+	}
+
+	int key(int node) { return page(node).getInt(offset(node) + KEY); }
+	void setKey(int node, int key) { writablePage(node).putInt(offset(node) + KEY, key); }
+	int height(int node) { return page(node).getInt(offset(node) + HEIGHT); }
+	void setHeight(int node, int height) { writablePage(node).putInt(offset(node) + HEIGHT, height); }
+	int subtreeSize(int node) { return page(node).getInt(offset(node) + SIZE); }
+	void setSubtreeSize(int node, int size) { writablePage(node).putInt(offset(node) + SIZE, size); }
+	int left(int node) { return page(node).getInt(offset(node) + LEFT); }
+	void setLeft(int node, int left) { writablePage(node).putInt(offset(node) + LEFT, left); }
+	int right(int node) { return page(node).getInt(offset(node) + RIGHT); }
+	void setRight(int node, int right) { writablePage(node).putInt(offset(node) + RIGHT, right); }
+	int parent(int node) { return page(node).getInt(offset(node) + PARENT); }
+	void setParent(int node, int parent) { writablePage(node).putInt(offset(node) + PARENT, parent); }
+
+	private long infoRef(int node) { return page(node).getLong(offset(node) + INFO); }
+	private void setInfoRef(int node, long ref) { writablePage(node).putLong(offset(node) + INFO, ref); }
+
+	/**
+	 * decodes the info of a node from the arena
+	 * @param node index of the node
+	 * @return
+	 * the info of the node (a new String)
+	 */
+	String info(int node) {
+		long ref = infoRef(node);
+		if (ref == NO_INFO) {
+			return null;
+		}
+		return new String(readRecord(this.valuePages, ref - 1), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * writes the info to the end of the arena and points the node to it. the old info of the node becomes garbage.
+	 * @param node index of the node
+	 * @param info the new info, may be null
+	 */
+	void setInfo(int node, String info) {
+		releaseInfo(infoRef(node));
+		setInfoRef(node, info == null ? NO_INFO : appendToArena(info.getBytes(StandardCharsets.UTF_8)) + 1);
+	}
+
+	/**
+	 * moves the arena address only, the bytes of the info stay where they are
+	 */
+	void moveInfo(int from, int to) {
+		releaseInfo(infoRef(to));
+		setInfoRef(to, infoRef(from));
+		setInfoRef(from, NO_INFO);
+	}
+
+	void ensureCapacity(int slots) {
+		int pages = (slots + NODE_PAGE_MASK) >>> NODE_PAGE_SHIFT;
+		if (pages <= this.nodePages.length) {
+			return;
+		}
+		int oldPages = this.nodePages.length;
+		this.nodePages = java.util.Arrays.copyOf(this.nodePages, pages);
+		for (int i = oldPages; i < pages; i++) {
+			this.nodePages[i] = newNodePage(i);
+		}
+	}
+
+	// -------- info arena ---------------
+
+	private ByteBuffer valuePage(long address) {
+		return this.valuePages[(int) (address >>> VALUE_PAGE_SHIFT)];
+	}
+
+	/**
+	 * @param address arena address of the info (its length prefix)
+	 * @return
+	 * the number of arena bytes the info takes
+	 */
+	private int recordBytes(long address) {
+		return Integer.BYTES + valuePage(address).getInt((int) (address & VALUE_PAGE_MASK));
+	}
+
+	/**
+	 * @param pages the pages of an arena
+	 * @param address arena address of a record
+	 * @return
+	 * the content of the record
+	 */
+	private static byte[] readRecord(ByteBuffer[] pages, long address) {
+		byte[] bytes = new byte[pages[(int) (address >>> VALUE_PAGE_SHIFT)].getInt((int) (address & VALUE_PAGE_MASK))];
+		address += Integer.BYTES;
+		int done = 0;
+		while (done < bytes.length) {
+			int inPage = (int) (address & VALUE_PAGE_MASK);
+			int chunk = Math.min(bytes.length - done, VALUE_PAGE_BYTES - inPage);
+			pages[(int) (address >>> VALUE_PAGE_SHIFT)].get(inPage, bytes, done, chunk);
+			done += chunk;
+			address += chunk;
+		}
+		return bytes;
+	}
+
+	/**
+	 * counts the bytes of an info as garbage
+	 * @param ref info field of a node
+	 */
+	private void releaseInfo(long ref) {
+		if (ref != NO_INFO) {
+			this.garbageBytes += recordBytes(ref - 1);
+		}
+	}
+
+	/**
+	 * appends a length prefixed record to the arena.
+	 * the prefix never crosses a page, the bytes may continue on the next pages.
+	 * @param bytes content of the record
+	 * @return
+	 * arena address of the record
+	 */
+	private long appendToArena(byte[] bytes) {
+		long address = this.valueEnd;
+		int inPage = (int) (address & VALUE_PAGE_MASK);
+		if (VALUE_PAGE_BYTES - inPage < Integer.BYTES) { // skip the page tail, so the length stays in one page
+			this.garbageBytes += VALUE_PAGE_BYTES - inPage;
+			address += VALUE_PAGE_BYTES - inPage;
+		}
+		long end = address + Integer.BYTES + bytes.length;
+		ensureArenaCapacity(end);
+		valuePage(address).putInt((int) (address & VALUE_PAGE_MASK), bytes.length);
+		copyToArena(address + Integer.BYTES, bytes);
+		this.valueEnd = end;
+		return address;
+	}
+
+	private void ensureArenaCapacity(long end) {
+		int pages = (int) ((end + VALUE_PAGE_MASK) >>> VALUE_PAGE_SHIFT);
+		if (pages <= this.valuePages.length) {
+			return;
+		}
+		int oldPages = this.valuePages.length;
+		this.valuePages = java.util.Arrays.copyOf(this.valuePages, pages);
+		for (int i = oldPages; i < pages; i++) {
+			this.valuePages[i] = newValuePage(i);
+		}
+	}
+
+	private void copyToArena(long address, byte[] bytes) {
+		int done = 0;
+		while (done < bytes.length) {
+			int inPage = (int) (address & VALUE_PAGE_MASK);
+			int chunk = Math.min(bytes.length - done, VALUE_PAGE_BYTES - inPage);
+			valuePage(address).put(inPage, bytes, done, chunk);
+			done += chunk;
+			address += chunk;
+		}
+	}
+
+	/**
+	 * compacts the arena, before an update, once more than half of it (and at least a page) is garbage -
+	 * so the arena stays within twice the size of the live infos.
+	 */
+	void beforeUpdate() {
+		if (this.garbageBytes > VALUE_PAGE_BYTES && this.garbageBytes * 2 > this.valueEnd) {
+			compactArena();
+		}
+	}
+
+	/**
+	 * copies the live infos to a new arena, in slot order, and drops the old one. <br>
+	 * the nodes are pointed to the new arena only once every info was copied (and every node page is writable),
+	 * so if it fails the tree still uses the old arena, unchanged.
+	 */
+	void compactArena() {
+		ByteBuffer[] oldPages = this.valuePages;
+		long oldEnd = this.valueEnd, oldGarbage = this.garbageBytes;
+		long[] refs = new long[this.used];
+		this.valuePages = new ByteBuffer[0];
+		this.valueEnd = 0;
+		this.garbageBytes = 0;
+		try {
+			for (int node = 0; node < this.used; node++) {
+				long ref = infoRef(node);
+				refs[node] = ref == NO_INFO ? NO_INFO : appendToArena(readRecord(oldPages, ref - 1)) + 1;
+			}
+			for (int node = 0; node < this.used; node += NODES_PER_PAGE) {
+				writablePage(node);
+			}
+		} catch (RuntimeException e) {
+			this.valuePages = oldPages;
+			this.valueEnd = oldEnd;
+			this.garbageBytes = oldGarbage;
+			throw e;
+		}
+		for (int node = 0; node < this.used; node++) {
+			setInfoRef(node, refs[node]);
+		}
+	}
+
+}
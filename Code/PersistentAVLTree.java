@@ -0,0 +1,391 @@
+/**
+ * A persistent (immutable) AVL Tree: insert and delete don't change the tree, they return a new version of it. <br>
+ * A new version copies only the O(logn) nodes on the path from the root to the change (path copying) and shares
+ * all the other nodes with the version it was made from, so keeping an old version (a snapshot) costs O(1),
+ * and the nodes of a version nobody references anymore are reclaimed by the GC. <br>
+ * Versions are immutable, so any number of threads may read them without locking.
+ * The algorithms keep AVLTree's rotation cases (ConcurrentAVLTree counts its rotations by them).
+ */
+public class PersistentAVLTree {
+
+	private final Node root;
+	private final Node minNode;
+	private final Node maxNode;
+
+	/**
+	 * default constructor- an empty tree
+	 */
+	public PersistentAVLTree() {
+		this(null);
+	}
+
+	/**
+	 * a version with the given root, finds its min and max
+	 * @param root root of the version, null if empty
+	 */
+	PersistentAVLTree(Node root) {
+		this.root = root;
+		Node min = root, max = root;
+		if (root != null) {
+			while (min.left != null) {
+				min = min.left;
+			}
+			while (max.right != null) {
+				max = max.right;
+			}
+		}
+		this.minNode = min;
+		this.maxNode = max;
+	}
+
+	/**
+	 * returns true if and only if the tree is empty (doesn't contain any node)
+	 * @return
+	 * true- if the tree is empty, else- false
+	 */
+	public boolean empty() {
+		return this.root == null;
+	}
+
+	/**
+	 * returns the info of an item with key k if it exists in the tree
+	 * @param k key of item being searched.
+	 * @return
+	 * the info of the item with key k, otherwise returns null
+	 */
+	public String search(int k) {
+		Node node = this.root;
+		while (node != null) {
+			if (k == node.key) {
+				return node.info;
+			}
+			node = k < node.key ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * returns a version of the tree with an item with key k and info i. this version doesn't change.
+	 * @param k key of item inserted
+	 * @param i value of item inserted
+	 * @return
+	 * the new version, or this version itself if an item with key k already exists in it
+	 */
+	public PersistentAVLTree insert(int k, String i) {
+		Node newRoot = insert(this.root, k, i, new int[1]);
+		return newRoot == this.root ? this : new PersistentAVLTree(newRoot);
+	}
+
+	/**
+	 * returns a version of the tree without the item with key k. this version doesn't change.
+	 * @param k key of item requested to be deleted.
+	 * @return
+	 * the new version, or this version itself if an item with key k was not found in it
+	 */
+	public PersistentAVLTree delete(int k) {
+		Node newRoot = delete(this.root, k, new int[1]);
+		return newRoot == this.root ? this : new PersistentAVLTree(newRoot);
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the smallest key in the tree, <br>
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		return this.minNode == null ? null : this.minNode.info;
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() {
+		return this.maxNode == null ? null : this.maxNode.info;
+	}
+
+	/**
+	 * @return
+	 * Returns a sorted array which contains all keys in the tree, <br>
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] keys = new int[size(this.root)];
+		int i = 0;
+		Node[] stack = new Node[height(this.root) + 1];
+		int top = 0;
+		Node node = this.root;
+		while (node != null || top > 0) {
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left;
+			}
+			node = stack[--top];
+			keys[i++] = node.key;
+			node = node.right;
+		}
+		return keys;
+	}
+
+	/**
+	 * @return
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,<br>
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		String[] infos = new String[size(this.root)];
+		int i = 0;
+		Node[] stack = new Node[height(this.root) + 1];
+		int top = 0;
+		Node node = this.root;
+		while (node != null || top > 0) {
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left;
+			}
+			node = stack[--top];
+			infos[i++] = node.info;
+			node = node.right;
+		}
+		return infos;
+	}
+
+	/**
+	 * @return
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	/**
+	 * @return
+	 * the root of this version, null if it is empty
+	 */
+	Node root() {
+		return this.root;
+	}
+
+
+	// -------- helper funcs ---------------
+
+	/**
+	 * inserts into the subtree by copying the path to the new leaf
+	 * @param node root of the subtree
+	 * @param k key to insert
+	 * @param i info to insert
+	 * @param rotations counter of the rotations done
+	 * @return
+	 * the root of the new subtree, or node itself if k already exists
+	 */
+	static Node insert(Node node, int k, String i, int[] rotations) {
+		if (node == null) {
+			return new Node(k, i, null, null);
+		}
+		if (k == node.key) {
+			return node;
+		}
+		if (k < node.key) {
+			Node left = insert(node.left, k, i, rotations);
+			return left == node.left ? node : rebalance(node.key, node.info, left, node.right, rotations);
+		}
+		Node right = insert(node.right, k, i, rotations);
+		return right == node.right ? node : rebalance(node.key, node.info, node.left, right, rotations);
+	}
+
+	/**
+	 * deletes from the subtree by copying the path to the deleted node
+	 * (and, if it has two children, the path to its successor which takes its place)
+	 * @param node root of the subtree
+	 * @param k key to delete
+	 * @param rotations counter of the rotations done
+	 * @return
+	 * the root of the new subtree, or node itself if k isn't in it
+	 */
+	static Node delete(Node node, int k, int[] rotations) {
+		if (node == null) {
+			return null;
+		}
+		if (k < node.key) {
+			Node left = delete(node.left, k, rotations);
+			return left == node.left ? node : rebalance(node.key, node.info, left, node.right, rotations);
+		}
+		if (k > node.key) {
+			Node right = delete(node.right, k, rotations);
+			return right == node.right ? node : rebalance(node.key, node.info, node.left, right, rotations);
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		Node successor = node.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		Node right = deleteMin(node.right, rotations);
+		return rebalance(successor.key, successor.info, node.left, right, rotations);
+	}
+
+	/**
+	 * @param node root of a non empty subtree
+	 * @param rotations counter of the rotations done
+	 * @return
+	 * the subtree without its min node
+	 */
+	private static Node deleteMin(Node node, int[] rotations) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return rebalance(node.key, node.info, deleteMin(node.left, rotations), node.right, rotations);
+	}
+
+	/**
+	 * @param node root of the subtree
+	 * @param rank 0 based rank, smaller than the size of the subtree
+	 * @return
+	 * the node of the given rank in the subtree
+	 */
+	static Node select(Node node, int rank) {
+		while (rank != size(node.left)) {
+			if (rank < size(node.left)) {
+				node = node.left;
+			}
+			else {
+				rank -= size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * splits the subtree by a key, in O(logn) new nodes (the subtree itself doesn't change)
+	 * @param node root of the subtree
+	 * @param k the key to split by
+	 * @return
+	 * {root of the keys smaller than k, root of the keys greater than or equal to k}
+	 */
+	static Node[] split(Node node, int k) {
+		if (node == null) {
+			return new Node[2];
+		}
+		if (k <= node.key) {
+			Node[] parts = split(node.left, k);
+			parts[1] = join(parts[1], node.key, node.info, node.right);
+			return parts;
+		}
+		Node[] parts = split(node.right, k);
+		parts[0] = join(node.left, node.key, node.info, parts[0]);
+		return parts;
+	}
+
+	/**
+	 * concatenates two subtrees, in O(logn) new nodes
+	 * @param left root of a subtree
+	 * @param right root of a subtree whose keys are all greater than the keys of left
+	 * @return
+	 * root of the subtree of both
+	 */
+	static Node concat(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		Node middle = select(right, 0);
+		return join(left, middle.key, middle.info, deleteMin(right, new int[1]));
+	}
+
+	/**
+	 * joins two subtrees and a middle item by going down the spine of the higher one to a subtree of the height
+	 * of the other, and rebalancing the copies on the way back (as AVLTree.joinNodes does in place)
+	 * @param left root of a subtree whose keys are smaller than key
+	 * @param key key of the middle item
+	 * @param info info of the middle item
+	 * @param right root of a subtree whose keys are greater than key
+	 * @return
+	 * root of the joined subtree
+	 */
+	private static Node join(Node left, int key, String info, Node right) {
+		if (height(left) > height(right) + 1) {
+			return rebalance(left.key, left.info, left.left, join(left.right, key, info, right), new int[1]);
+		}
+		if (height(right) > height(left) + 1) {
+			return rebalance(right.key, right.info, join(left, key, info, right.left), right.right, new int[1]);
+		}
+		return new Node(key, info, left, right);
+	}
+
+	/**
+	 * builds a node from the given fields, and rotates it if it is an avl criminal
+	 * (same cases as AVLTree.checkAndCommitRotation).
+	 * @param key key of the node
+	 * @param info info of the node
+	 * @param left its left subtree (balanced)
+	 * @param right its right subtree (balanced)
+	 * @param rotations counter of the rotations done
+	 * @return
+	 * root of the balanced subtree
+	 */
+	private static Node rebalance(int key, String info, Node left, Node right, int[] rotations) {
+		int bf = height(left) - height(right);
+		if (bf == 2) {
+			if (height(left.left) >= height(left.right)) { // single rotation to the right
+				rotations[0] += 1;
+				return new Node(left.key, left.info, left.left, new Node(key, info, left.right, right));
+			}
+			Node pivot = left.right; // rotation to the left and then to the right
+			rotations[0] += 2;
+			return new Node(pivot.key, pivot.info,
+					new Node(left.key, left.info, left.left, pivot.left),
+					new Node(key, info, pivot.right, right));
+		}
+		if (bf == -2) {
+			if (height(right.right) >= height(right.left)) { // single rotation to the left
+				rotations[0] += 1;
+				return new Node(right.key, right.info, new Node(key, info, left, right.left), right.right);
+			}
+			Node pivot = right.left; // rotation to the right and then to the left
+			rotations[0] += 2;
+			return new Node(pivot.key, pivot.info,
+					new Node(key, info, left, pivot.left),
+					new Node(right.key, right.info, pivot.right, right.right));
+		}
+		return new Node(key, info, left, right);
+	}
+
+	static int height(Node node) {
+		return node == null ? -1 : node.height;
+	}
+
+	static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * an immutable node - its subtree never changes after it is built
+	 */
+	static final class Node {
+		final int key;
+		final String info;
+		final Node left;
+		final Node right;
+		final int height;
+		final int size;
+
+		Node(int key, String info, Node left, Node right) {
+			this.key = key;
+			this.info = info;
+			this.left = left;
+			this.right = right;
+			this.height = 1 + Math.max(height(left), height(right));
+			this.size = 1 + size(left) + size(right);
+		}
+	}
+
+}
@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The binary snapshot format of AVLTree and TreeList (AVLTree.writeSnapshot / readSnapshot, same for TreeList). <br>
+ * header: magic "AVLS" (4 bytes), version (1 byte), kind (1 byte: tree / list), flags (1 byte: deflate), item count (varint). <br>
+ * then blocks of about BLOCK_BYTES, each: item count, raw length, stored length (varints) and the stored bytes
+ * (the raw bytes, or them deflated). <br>
+ * an item in a block: its key minus the previous key in the block (zigzag varint, the first one minus 0) -
+ * small for the sorted keys of a tree, and its info: UTF-8 length + 1 (varint, 0 means null) and the UTF-8 bytes. <br>
+ * items are written and read one by one, so neither side holds more than a block besides the tree.
+ */
+final class SnapshotCodec {
+	static final int MAGIC = 0x41564C53; // "AVLS"
+	static final byte VERSION = 1;
+	static final byte KIND_TREE = 0, KIND_LIST = 1;
+	static final byte FLAG_DEFLATE = 1;
+	/**
+	 * a block is closed once its raw bytes reach this size
+	 */
+	static final int BLOCK_BYTES = 1 << 16;
+	/**
+	 * largest raw / stored block length accepted when reading (a block holds at least one item, and an info may be long)
+	 */
+	private static final int MAX_BLOCK_BYTES = Integer.MAX_VALUE - 16;
+	/**
+	 * the reader's block buffers start at this size, and grow (doubling) only as the bytes of a longer block arrive -
+	 * so a corrupt block length costs at most about twice the bytes actually in the stream, not a 2GB array up front
+	 */
+	private static final int INITIAL_BLOCK_BYTES = 2 * BLOCK_BYTES;
+
+	private SnapshotCodec() { }
+
+	/**
+	 * writes a snapshot of count items.
+	 * @param out channel to write to (not closed)
+	 * @param kind KIND_TREE or KIND_LIST
+	 * @param count number of items
+	 * @param items iterator over exactly count items
+	 * @param compress whether to deflate the blocks
+	 * @throws IOException if writing fails
+	 */
+	static void write(WritableByteChannel out, byte kind, int count, Iterator<Item> items, boolean compress) throws IOException {
+		Bytes raw = new Bytes(BLOCK_BYTES + 64);
+		raw.putInt(MAGIC);
+		raw.put(VERSION);
+		raw.put(kind);
+		raw.put(compress ? FLAG_DEFLATE : 0);
+		raw.putVarint(count);
+		writeFully(out, raw.array, raw.length);
+
+		Bytes header = new Bytes(16);
+		Bytes deflated = compress ? new Bytes(BLOCK_BYTES + 64) : null;
+		Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+		try {
+			int written = 0;
+			while (written < count) {
+				raw.length = 0;
+				int blockItems = 0;
+				long previousKey = 0;
+				while (written < count && raw.length < BLOCK_BYTES) {
+					Item item = items.next();
+					raw.putVarint(zigzag(item.getKey() - previousKey));
+					previousKey = item.getKey();
+					String info = item.getInfo();
+					if (info == null) {
+						raw.putVarint(0);
+					}
+					else {
+						byte[] bytes = info.getBytes(StandardCharsets.UTF_8);
+						raw.putVarint(bytes.length + 1L);
+						raw.put(bytes);
+					}
+					blockItems++;
+					written++;
+				}
+				Bytes stored = raw;
+				if (compress) {
+					deflater.reset();
+					deflater.setInput(raw.array, 0, raw.length);
+					deflater.finish();
+					deflated.length = 0;
+					while (!deflater.finished()) {
+						deflated.ensure(deflated.length + 4096);
+						deflated.length += deflater.deflate(deflated.array, deflated.length, deflated.array.length - deflated.length);
+					}
+					stored = deflated;
+				}
+				header.length = 0;
+				header.putVarint(blockItems);
+				header.putVarint(raw.length);
+				header.putVarint(stored.length);
+				writeFully(out, header.array, header.length);
+				writeFully(out, stored.array, stored.length);
+			}
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * reads the header of a snapshot, and returns a reader of its items, which the caller must close.
+	 * @param in channel to read from (not closed)
+	 * @param kind the expected kind
+	 * @return
+	 * a reader positioned after the header
+	 * @throws IOException if reading fails, or the stream isn't a snapshot of this kind and version
+	 */
+	static Reader read(ReadableByteChannel in, byte kind) throws IOException {
+		Reader reader = new Reader(in);
+		if (reader.readInt() != MAGIC || reader.readByte() != VERSION) {
+			throw new IOException("not a tree snapshot of this version");
+		}
+		if (reader.readByte() != kind) {
+			throw new IOException(kind == KIND_TREE ? "the snapshot is of a TreeList, not an AVLTree" : "the snapshot is of an AVLTree, not a TreeList");
+		}
+		boolean deflated = (reader.readByte() & FLAG_DEFLATE) != 0;
+		long count = reader.readVarint();
+		if (count < 0 || count > Integer.MAX_VALUE) {
+			throw new IOException("corrupt snapshot: item count " + count);
+		}
+		reader.remaining = (int) count;
+		reader.inflater = deflated ? new Inflater() : null; // after the header checks, so a rejected header leaks nothing
+		return reader;
+	}
+
+	/**
+	 * decodes the items of a snapshot lazily, block by block. <br>
+	 * as an Iterator it reports read errors as UncheckedIOException (unwrapped by AVLTree / TreeList.readSnapshot). <br>
+	 * close ends the Inflater of a compressed snapshot - on every exit path, since a reader which fails or is
+	 * left before its last item would otherwise hold the native zlib memory until it is finalized.
+	 */
+	static final class Reader implements Iterator<Item>, AutoCloseable {
+		private final ReadableByteChannel in;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_BYTES);
+		private Inflater inflater;
+		/**
+		 * items not read yet (in the whole snapshot / in the current block)
+		 */
+		private int remaining;
+		private int remainingInBlock;
+		private byte[] block = new byte[0];
+		private int position;
+		private int blockLength;
+		private long previousKey;
+
+		private Reader(ReadableByteChannel in) {
+			this.in = in;
+			this.buffer.flip(); // empty
+		}
+
+		/**
+		 * @return
+		 * the number of items in the snapshot which weren't read yet
+		 */
+		int remaining() {
+			return this.remaining;
+		}
+
+		public boolean hasNext() {
+			return this.remaining > 0;
+		}
+
+		public Item next() {
+			if (this.remaining == 0) {
+				throw new NoSuchElementException();
+			}
+			try {
+				if (this.remainingInBlock == 0) {
+					readBlock();
+				}
+				long key = this.previousKey + unzigzag(blockVarint());
+				if (key < Integer.MIN_VALUE || key > Integer.MAX_VALUE) {
+					throw new IOException("corrupt snapshot: key out of range");
+				}
+				this.previousKey = key;
+				long infoLength = blockVarint();
+				String info = null;
+				if (infoLength > 0) {
+					if (infoLength - 1 > this.blockLength - this.position) {
+						throw new IOException("corrupt snapshot: info past the end of its block");
+					}
+					info = new String(this.block, this.position, (int) (infoLength - 1), StandardCharsets.UTF_8);
+					this.position += (int) (infoLength - 1);
+				}
+				this.remaining--;
+				this.remainingInBlock--;
+				if (this.remaining == 0) {
+					close();
+				}
+				return new Item((int) key, info);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * ends the Inflater, if the snapshot is compressed, and drops the items not read yet (the channel isn't
+		 * closed). can be called more than once.
+		 */
+		@Override
+		public void close() {
+			this.remaining = 0;
+			if (this.inflater != null) {
+				this.inflater.end();
+				this.inflater = null;
+			}
+		}
+
+		private void readBlock() throws IOException {
+			long items = readVarint(), rawLength = readVarint(), storedLength = readVarint();
+			if (items <= 0 || items > this.remaining || rawLength > MAX_BLOCK_BYTES || storedLength > MAX_BLOCK_BYTES
+					|| (this.inflater == null && storedLength != rawLength)) {
+				throw new IOException("corrupt snapshot: bad block header");
+			}
+			byte[] stored = readGrowing((int) storedLength);
+			if (this.inflater == null) {
+				this.block = stored;
+			}
+			else {
+				this.inflater.reset();
+				this.inflater.setInput(stored);
+				try {
+					int inflated = 0;
+					while (inflated < rawLength && !this.inflater.finished()) {
+						if (inflated == this.block.length) { // grows with the inflated bytes, as readGrowing does
+							this.block = Arrays.copyOf(this.block, (int) Math.min(rawLength, Math.max(2L * inflated, INITIAL_BLOCK_BYTES)));
+						}
+						int n = this.inflater.inflate(this.block, inflated, (int) Math.min(rawLength, this.block.length) - inflated);
+						if (n == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+							break;
+						}
+						inflated += n;
+					}
+					if (inflated != rawLength) {
+						throw new IOException("corrupt snapshot: block is shorter than its raw length");
+					}
+				} catch (DataFormatException e) {
+					throw new IOException("corrupt snapshot: " + e.getMessage(), e);
+				}
+			}
+			this.position = 0;
+			this.blockLength = (int) rawLength;
+			this.remainingInBlock = (int) items;
+			this.previousKey = 0;
+		}
+
+		private long blockVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (this.position >= this.blockLength) {
+					throw new IOException("corrupt snapshot: item past the end of its block");
+				}
+				byte b = this.block[this.position++];
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("corrupt snapshot: varint too long");
+		}
+
+		// -------- reading the channel ---------------
+
+		private byte readByte() throws IOException {
+			if (!this.buffer.hasRemaining()) {
+				fill();
+			}
+			return this.buffer.get();
+		}
+
+		private int readInt() throws IOException {
+			return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16 | (readByte() & 0xFF) << 8 | (readByte() & 0xFF);
+		}
+
+		private long readVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("corrupt snapshot: varint too long");
+		}
+
+		/**
+		 * @param length number of bytes to read
+		 * @return
+		 * the next length bytes, in an array which grows (doubling from INITIAL_BLOCK_BYTES) as they are read
+		 * @throws IOException if reading fails, or the stream ends first
+		 */
+		private byte[] readGrowing(int length) throws IOException {
+			byte[] bytes = new byte[Math.min(length, INITIAL_BLOCK_BYTES)];
+			int done = 0;
+			while (true) {
+				readFully(bytes, done, bytes.length);
+				done = bytes.length;
+				if (done == length) {
+					return bytes;
+				}
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * done));
+			}
+		}
+
+		/**
+		 * reads bytes [done, end) of the array
+		 */
+		private void readFully(byte[] bytes, int done, int end) throws IOException {
+			while (done < end) {
+				if (!this.buffer.hasRemaining()) {
+					if (end - done >= this.buffer.capacity()) { // large - read straight into the array
+						ByteBuffer target = ByteBuffer.wrap(bytes, done, end - done);
+						while (target.hasRemaining()) {
+							if (this.in.read(target) < 0) {
+								throw new IOException("truncated snapshot");
+							}
+						}
+						return;
+					}
+					fill();
+				}
+				int n = Math.min(end - done, this.buffer.remaining());
+				this.buffer.get(bytes, done, n);
+				done += n;
+			}
+		}
+
+		private void fill() throws IOException {
+			this.buffer.clear();
+			int n;
+			do {
+				n = this.in.read(this.buffer);
+			} while (n == 0);
+			this.buffer.flip();
+			if (n < 0) {
+				throw new IOException("truncated snapshot");
+			}
+		}
+	}
+
+	// -------- helper funcs ---------------
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeFully(WritableByteChannel out, byte[] bytes, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/**
+	 * a growable byte array
+	 */
+	private static final class Bytes {
+		byte[] array;
+		int length;
+
+		Bytes(int capacity) {
+			this.array = new byte[capacity];
+		}
+
+		void ensure(int capacity) {
+			if (capacity > this.array.length) {
+				this.array = java.util.Arrays.copyOf(this.array, Math.max(capacity, this.array.length * 2));
+			}
+		}
+
+		void put(byte b) {
+			ensure(this.length + 1);
+			this.array[this.length++] = b;
+		}
+
+		void put(byte[] bytes) {
+			ensure(this.length + bytes.length);
+			System.arraycopy(bytes, 0, this.array, this.length, bytes.length);
+			this.length += bytes.length;
+		}
+
+		void putInt(int value) {
+			put((byte) (value >>> 24));
+			put((byte) (value >>> 16));
+			put((byte) (value >>> 8));
+			put((byte) value);
+		}
+
+		void putVarint(long value) {
+			ensure(this.length + 10);
+			while ((value & ~0x7FL) != 0) {
+				this.array[this.length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.array[this.length++] = (byte) value;
+		}
+	}
+}
@@ -0,0 +1,464 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe AVL Tree for several writers: the key space is cut into ranges (stripes), and every stripe is
+ * a sequence of PersistentAVLTree versions (as in ConcurrentAVLTree) with its own writer lock. Writers of keys in
+ * different stripes never block each other, search never locks, and the reads of the whole tree lock only if
+ * writes keep interleaving with them. <br>
+ * The default tree derives its stripes from the data: it starts with one stripe, and a stripe which grows past
+ * twice its share of the tree (and at least MIN_SPLIT_SIZE items) is split at its median key - merging the two
+ * smallest neighbour stripes once there are MAX_STRIPES. Split and merge are O(logn) on the persistent versions,
+ * and they lock only the stripes they replace. So whatever range the keys come from, the stripes hold about
+ * equal parts of it. A tree made with explicit bounds keeps them. <br>
+ * All operations are linearizable: search, insert, delete work on the one stripe of their key,
+ * and min, max, size, empty, keysToArray, infoToArray read the versions of all stripes until two reads in a row
+ * are the same (so the tree had all of them at once), and work on those. After MAX_COLLECTS such attempts
+ * (writes kept landing in between) they lock all the stripes and read them under the locks - so a read under
+ * constant writes waits for the writers once, instead of retrying forever. <br>
+ * Writers are serialized per stripe, not per node: two writers of keys in the same stripe take turns on its lock
+ * (each copies the path it changes in the stripe's persistent version), so writes scale with the number of
+ * stripes the keys fall into, not with the number of writers. <br>
+ * insert and delete return the rotations done in the key's stripe.
+ */
+public class StripedAVLTree {
+	/**
+	 * the most stripes the default tree cuts the keys into
+	 */
+	static final int MAX_STRIPES = 64;
+	/**
+	 * the smallest stripe the default tree splits
+	 */
+	static final int MIN_SPLIT_SIZE = 512;
+	/**
+	 * lock free double collects a read of all the stripes tries, before it locks them
+	 */
+	static final int MAX_COLLECTS = 8;
+
+	/**
+	 * the current stripes - replaced as a whole when stripes are split / merged
+	 */
+	private volatile Layout layout;
+	/**
+	 * true if the stripes follow the data (default constructor)
+	 */
+	private final boolean adaptive;
+	/**
+	 * serializes the changes of the layout (writers don't take it)
+	 */
+	private final ReentrantLock layoutLock = new ReentrantLock();
+
+	/**
+	 * default constructor- an empty tree, whose stripes follow the keys inserted to it
+	 */
+	public StripedAVLTree() {
+		this.layout = new Layout(new int[0], new Stripe[] { new Stripe(null) });
+		this.adaptive = true;
+	}
+
+	/**
+	 * initialize an empty tree with fixed stripes that start at the given keys. <br>
+	 * e.g. bounds {0, 1000} makes the stripes (-inf, 0), [0, 1000), [1000, inf)
+	 * @param bounds the first key of every stripe but the first one, strictly increasing
+	 */
+	public StripedAVLTree(int[] bounds) {
+		for (int s = 1; s < bounds.length; s++) {
+			if (bounds[s - 1] >= bounds[s]) {
+				throw new IllegalArgumentException("stripe bounds must be strictly increasing");
+			}
+		}
+		Stripe[] stripes = new Stripe[bounds.length + 1];
+		for (int s = 0; s < stripes.length; s++) {
+			stripes[s] = new Stripe(null);
+		}
+		this.layout = new Layout(bounds.clone(), stripes);
+		this.adaptive = false;
+	}
+
+	/**
+	 * returns true if and only if the tree is empty (doesn't contain any node)
+	 * @return
+	 * true- if the tree is empty, else- false
+	 */
+	public boolean empty() {
+		for (PersistentAVLTree version : versions()) {
+			if (!version.empty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * returns the info of an item with key k if it exists in the tree. doesn't lock.
+	 * @param k key of item being searched.
+	 * @return
+	 * the info of the item with key k, otherwise returns null
+	 */
+	public String search(int k) {
+		return this.layout.stripeOf(k).version.search(k);
+	}
+
+	/**
+	 * inserts an item with key k and info i, locking only k's stripe.
+	 * @param k key of item inserted
+	 * @param i value of item inserted
+	 * @return
+	 * the number of rebalancing operations in the stripe, or 0 if no rebalancing operations were necessary.
+	 * -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(int k, String i) {
+		while (true) {
+			Layout layout = this.layout;
+			Stripe stripe = layout.stripeOf(k);
+			int rotations;
+			int stripeSize;
+			stripe.lock.lock();
+			try {
+				if (stripe.retired) { // split / merged meanwhile, the next layout is already published
+					continue;
+				}
+				PersistentAVLTree.Node root = stripe.version.root();
+				int[] counter = new int[1];
+				PersistentAVLTree.Node newRoot = PersistentAVLTree.insert(root, k, i, counter);
+				if (newRoot == root) { // key already exists
+					return -1;
+				}
+				stripe.version = new PersistentAVLTree(newRoot);
+				rotations = counter[0];
+				stripeSize = newRoot.size;
+			} finally {
+				stripe.lock.unlock();
+			}
+			if (this.adaptive && stripeSize > layout.splitSize) {
+				split(k);
+			}
+			return rotations;
+		}
+	}
+
+	/**
+	 * deletes an item with key k, if it is there, locking only k's stripe.
+	 * @param k key of item requested to be deleted.
+	 * @return
+	 * the number of rebalancing operations in the stripe, or 0 if no rebalancing operations were needed,
+	 * or -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(int k) {
+		while (true) {
+			Stripe stripe = this.layout.stripeOf(k);
+			stripe.lock.lock();
+			try {
+				if (stripe.retired) {
+					continue;
+				}
+				PersistentAVLTree.Node root = stripe.version.root();
+				int[] counter = new int[1];
+				PersistentAVLTree.Node newRoot = PersistentAVLTree.delete(root, k, counter);
+				if (newRoot == root) { // key not found
+					return -1;
+				}
+				stripe.version = new PersistentAVLTree(newRoot);
+				return counter[0];
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the smallest key in the tree, <br>
+	 * or null if the tree is empty. locks only if writes keep interleaving (see the class doc).
+	 */
+	public String min() {
+		for (PersistentAVLTree version : versions()) {
+			if (!version.empty()) {
+				return version.min();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty. locks only if writes keep interleaving (see the class doc).
+	 */
+	public String max() {
+		PersistentAVLTree[] versions = versions();
+		for (int s = versions.length - 1; s >= 0; s--) {
+			if (!versions[s].empty()) {
+				return versions[s].max();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return
+	 * Returns a sorted array which contains all keys in the tree, <br>
+	 * or an empty array if the tree is empty. locks only if writes keep interleaving (see the class doc).
+	 */
+	public int[] keysToArray() {
+		PersistentAVLTree[] versions = versions();
+		int[] keys = new int[size(versions)];
+		int i = 0;
+		for (PersistentAVLTree version : versions) {
+			int[] part = version.keysToArray();
+			System.arraycopy(part, 0, keys, i, part.length);
+			i += part.length;
+		}
+		return keys;
+	}
+
+	/**
+	 * @return
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,<br>
+	 * or an empty array if the tree is empty. locks only if writes keep interleaving (see the class doc).
+	 */
+	public String[] infoToArray() {
+		PersistentAVLTree[] versions = versions();
+		String[] infos = new String[size(versions)];
+		int i = 0;
+		for (PersistentAVLTree version : versions) {
+			String[] part = version.infoToArray();
+			System.arraycopy(part, 0, infos, i, part.length);
+			i += part.length;
+		}
+		return infos;
+	}
+
+	/**
+	 * @return
+	 * Returns the number of nodes in the tree. locks only if writes keep interleaving (see the class doc).
+	 */
+	public int size() {
+		return size(versions());
+	}
+
+	/**
+	 * @return
+	 * the number of stripes the keys are cut into now
+	 */
+	public int stripeCount() {
+		return this.layout.stripes.length;
+	}
+
+
+	// -------- helper funcs ---------------
+
+	/**
+	 * reads the versions of all the stripes until two reads in a row find the same layout and versions.
+	 * every write publishes a new version object, so the tree held all of them at once between the two reads.
+	 * after MAX_COLLECTS attempts, reads them under the locks of all the stripes (see lockedVersions).
+	 * @return
+	 * the versions of the stripes, in key order
+	 */
+	private PersistentAVLTree[] versions() {
+		for (int attempt = 0; attempt < MAX_COLLECTS; attempt++) {
+			Layout layout = this.layout;
+			PersistentAVLTree[] versions = new PersistentAVLTree[layout.stripes.length];
+			for (int s = 0; s < versions.length; s++) {
+				versions[s] = layout.stripes[s].version;
+			}
+			boolean same = layout == this.layout;
+			for (int s = 0; same && s < versions.length; s++) {
+				same = versions[s] == layout.stripes[s].version;
+			}
+			if (same) {
+				return versions;
+			}
+		}
+		return lockedVersions();
+	}
+
+	/**
+	 * reads the versions of all the stripes while holding all their locks, taken in key order (as split takes them).
+	 * a stripe which isn't retired once locked is in the current layout, so if none is, the versions are the tree.
+	 * otherwise a split / merge replaced some before they were locked, and it retries on the new layout.
+	 * @return
+	 * the versions of the stripes, in key order
+	 */
+	private PersistentAVLTree[] lockedVersions() {
+		while (true) {
+			Stripe[] stripes = this.layout.stripes;
+			for (Stripe stripe : stripes) {
+				stripe.lock.lock();
+			}
+			try {
+				PersistentAVLTree[] versions = new PersistentAVLTree[stripes.length];
+				boolean current = true;
+				for (int s = 0; s < stripes.length; s++) {
+					current &= !stripes[s].retired;
+					versions[s] = stripes[s].version;
+				}
+				if (current) {
+					return versions;
+				}
+			} finally {
+				for (Stripe stripe : stripes) {
+					stripe.lock.unlock();
+				}
+			}
+		}
+	}
+
+	private static int size(PersistentAVLTree[] versions) {
+		int size = 0;
+		for (PersistentAVLTree version : versions) {
+			size += version.size();
+		}
+		return size;
+	}
+
+	/**
+	 * splits the stripe of k at its median key if it is still larger than its share, and if there are MAX_STRIPES
+	 * stripes, merges the two neighbours (other than it) with the fewest items - if together they are not above
+	 * the share either. locks the replaced stripes, marks them retired and publishes the new layout before
+	 * unlocking them, so a writer which waited on them retries on the new layout. <br>
+	 * does nothing if another thread is changing the layout (the next insert to the stripe tries again).
+	 * @param k a key of the stripe to split
+	 */
+	private void split(int k) {
+		if (!this.layoutLock.tryLock()) {
+			return;
+		}
+		try {
+			Layout layout = this.layout;
+			int n = layout.stripes.length;
+			int s = layout.indexOf(k);
+			int merge = -2; // the first of the merged neighbours, -2 for none
+			if (n == MAX_STRIPES) {
+				long best = layout.splitSize + 1L;
+				for (int p = 0; p + 1 < n; p++) {
+					if (p != s && p + 1 != s) {
+						long pair = (long) layout.stripes[p].version.size() + layout.stripes[p + 1].version.size();
+						if (pair < best) {
+							best = pair;
+							merge = p;
+						}
+					}
+				}
+				if (merge < 0) { // the stripes are about equal - the tree just grew, so the share is taken again
+					this.layout = new Layout(layout.bounds, layout.stripes);
+					return;
+				}
+			}
+			Stripe[] locked = merge < 0 ? new Stripe[] { layout.stripes[s] }
+					: merge < s ? new Stripe[] { layout.stripes[merge], layout.stripes[merge + 1], layout.stripes[s] }
+					: new Stripe[] { layout.stripes[s], layout.stripes[merge], layout.stripes[merge + 1] };
+			for (Stripe stripe : locked) {
+				stripe.lock.lock();
+			}
+			try {
+				PersistentAVLTree.Node root = layout.stripes[s].version.root();
+				if (root == null || root.size <= layout.splitSize) { // deleted from meanwhile
+					return;
+				}
+				int median = PersistentAVLTree.select(root, root.size / 2).key;
+				PersistentAVLTree.Node[] halves = PersistentAVLTree.split(root, median);
+
+				int[] bounds = new int[n - 1 + 1 - (merge < 0 ? 0 : 1)];
+				Stripe[] stripes = new Stripe[bounds.length + 1];
+				int b = 0;
+				int t = 0;
+				for (int j = 0; j < n; j++) {
+					if (j == merge + 1) { // merged into stripe merge, with the bound between them
+						continue;
+					}
+					if (j > 0) {
+						bounds[b++] = layout.bounds[j - 1];
+					}
+					if (j == s) {
+						stripes[t++] = new Stripe(halves[0]);
+						bounds[b++] = median;
+						stripes[t++] = new Stripe(halves[1]);
+					}
+					else if (j == merge) {
+						stripes[t++] = new Stripe(PersistentAVLTree.concat(layout.stripes[j].version.root(),
+								layout.stripes[j + 1].version.root()));
+					}
+					else {
+						stripes[t++] = layout.stripes[j];
+					}
+				}
+				for (Stripe stripe : locked) {
+					stripe.retired = true;
+				}
+				this.layout = new Layout(bounds, stripes);
+			} finally {
+				for (Stripe stripe : locked) {
+					stripe.lock.unlock();
+				}
+			}
+		} finally {
+			this.layoutLock.unlock();
+		}
+	}
+
+	/**
+	 * a range of keys - its current version, and the lock of its writers
+	 */
+	private static final class Stripe {
+		final ReentrantLock lock = new ReentrantLock();
+		volatile PersistentAVLTree version;
+		/**
+		 * set (under lock) when the stripe is replaced by a split / merge - its version never changes afterwards
+		 */
+		boolean retired;
+
+		Stripe(PersistentAVLTree.Node root) {
+			this.version = new PersistentAVLTree(root);
+		}
+	}
+
+	/**
+	 * an immutable cut of the keys into stripes
+	 */
+	private static final class Layout {
+		/**
+		 * bounds[s] is the smallest key of stripe s+1 (sorted, strictly increasing). stripe 0 starts at Integer.MIN_VALUE.
+		 */
+		final int[] bounds;
+		final Stripe[] stripes;
+		/**
+		 * a stripe is split once it holds more items than this - twice its share of the tree when the layout was made
+		 */
+		final int splitSize;
+
+		Layout(int[] bounds, Stripe[] stripes) {
+			this.bounds = bounds;
+			this.stripes = stripes;
+			long size = 0;
+			for (Stripe stripe : stripes) {
+				size += stripe.version.size();
+			}
+			this.splitSize = (int) Math.max(MIN_SPLIT_SIZE, 2 * size / MAX_STRIPES);
+		}
+
+		/**
+		 * @param k a key
+		 * @return
+		 * the index of the stripe which holds k (binary search on the bounds)
+		 */
+		int indexOf(int k) {
+			int low = 0, high = this.bounds.length; // the stripe is in [low, high]
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (k < this.bounds[mid]) {
+					high = mid;
+				}
+				else {
+					low = mid + 1;
+				}
+			}
+			return low;
+		}
+
+		Stripe stripeOf(int k) {
+			return this.stripes[indexOf(k)];
+		}
+	}
+
+}
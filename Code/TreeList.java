@@ -6,18 +6,74 @@
  public class TreeList {
 
     /**
-     * AVLTree (not necessarily BST). Stores nodes each consists of an Item- (key, info). <br>
+     * root of the ranked AVL tree (not necessarily BST). Stores nodes each consists of an Item- (key, info). <br>
      *     Used for searching\inserting\deleting elements by their index (equivalent to rank - 1) in O(logn).
-     *     Only the field root will be used, nor maxNode nor minNode because they not improve complexity, and requires maintaining
+     *     The nodes keep no keys to search by - only sizes (for the ranks) and heights (for the balance).
      */
-    private AVLTree rankedAvlTree;
+    private Node root;
+    /**
+     * the last node of the list (null if empty), so appending doesn't walk down from the root
+     */
+    private Node last;
+    /**
+     * metrics which retrieve, insert and delete record into, null while metrics are disabled
+     */
+    private TreeMetrics metrics;
+    /**
+     * counts the operations which move nodes out of the list (deleteRange, splitAt, and concat of this list into
+     * another) - a Cursor made before one of them may be on a node that is no longer in the list, so it checks this
+     */
+    private int detachCount;
+
+    /**
+     * Constructor of TreeList class- an empty list.
+     */
+    public TreeList() { }
+
+    /**
+     * builds a list from n items in their order, in O(n) - without any insert or rotation.
+     * the items are consumed one by one, so they don't have to be in memory together.
+     * @param items iterator over (at least) n items
+     * @param n number of items to take from the iterator
+     * @return
+     * a list of the n items, or null if n is negative or the iterator has less than n items
+     */
+    public static TreeList bulkLoad(java.util.Iterator<Item> items, int n) {
+        if (n < 0) {
+            return null;
+        }
+        TreeList list = new TreeList();
+        list.root = buildBalanced(items, n, null);
+        if (list.root == null && n > 0) {
+            return null;
+        }
+        list.last = list.root == null ? null : maxInSubTree(list.root);
+        return list;
+    }
+
+    /**
+     * writes the list to a channel in the binary snapshot format (see SnapshotCodec), item by item.
+     * @param out channel to write to (it isn't closed)
+     * @param compress whether to deflate the blocks
+     * @throws IOException if writing fails
+     */
+    public void writeSnapshot(java.nio.channels.WritableByteChannel out, boolean compress) throws java.io.IOException {
+        SnapshotCodec.write(out, SnapshotCodec.KIND_LIST, size(), java.util.Spliterators.iterator(spliterator()), compress);
+    }
 
     /**
-     * Constructor of TreeList class. <br>
-     * building an avl tree for every instance of the class.
+     * reads a list written by writeSnapshot, decoding its items one by one straight into bulkLoad (O(n)).
+     * @param in channel to read from (it isn't closed)
+     * @return
+     * the list
+     * @throws IOException if reading fails, or the stream isn't a valid snapshot of a TreeList
      */
-    public TreeList() {
-        this.rankedAvlTree = new AVLTree();
+    public static TreeList readSnapshot(java.nio.channels.ReadableByteChannel in) throws java.io.IOException {
+        try (SnapshotCodec.Reader items = SnapshotCodec.read(in, SnapshotCodec.KIND_LIST)) {
+            return bulkLoad(items, items.remaining());
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
@@ -31,8 +87,13 @@
         if (! isIndexValidRetrieveAndDelete(i)) {
             return null;
         }
-        AVLTree.AVLNode node = getNodeByIndex(i);
-        return node.getItem();
+        TreeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        Node node = getNodeByIndex(i);
+        if (metrics != null) {
+            metrics.record(TreeMetrics.Operation.SEARCH, start, 0, depth(node) + 1);
+        }
+        return node.item;
     }
 
     /**
@@ -43,42 +104,25 @@
      * @return
      * -1 if i smaller then 0 or i greater then n, otherwise returns 0
      * @implNote
-     * (1) first checks where to insert the node: <br>
-     *    (1.1) if as last - uses insertLast(AVLNode newNode)
-     *    (1.2) else, finds the maximum node in the left subtree of (1) by the method AVLTree.getMaxInSubTree(AVLNode root)
-     *         (1.2.1) inserts after (1.2)
-     *    (1.3) update height, size and commits rotations in the path to the root
+     * (1) first links the new node as a leaf: <br>
+     *    (1.1) if as last - as the right child of the last node (kept in the field last, no walk down)
+     *    (1.2) else, walks down once by the sizes to the leaf position of rank i
+     * (2) updates height, size and commits rotations in the path to the root (see fixUp)
      */
     public int insert(int i, int k, String s) {
+        TreeMetrics metrics = this.metrics;
         if( !isIndexValidInsert(i)){
-            return -1;
-        }
-        int treeSize = rankedAvlTree.size();
-        AVLTree.AVLNode newNode = new AVLTree().new AVLNode(k, s);
-        newNode.setSize(1);
-        newNode.setHeight(0);
-        if (i == treeSize) {
-            insertLast(newNode);
-        }else{   // i < treeSize
-            AVLTree.AVLNode currIndexINode = getNodeByIndex(i);
-            if(currIndexINode.getLeft() == null){
-                currIndexINode.setLeft(newNode);
-                newNode.setParent(currIndexINode);
-            }else{
-                AVLTree.AVLNode predCurrIndexINode =  rankedAvlTree.getMaxInSubTree( (AVLTree.AVLNode) currIndexINode.getLeft());
-                predCurrIndexINode.setRight(newNode);
-                newNode.setParent(predCurrIndexINode);
+            if (metrics != null) {
+                metrics.recordFailure(TreeMetrics.Operation.INSERT);
             }
+            return -1;
         }
-        AVLTree.AVLNode y = (AVLTree.AVLNode) newNode.getParent();
-        while (y != null) {
-            rankedAvlTree.updateSize(y);
-            rankedAvlTree.updateHeight(y);
-            rankedAvlTree.checkAndCommitRotation(y);
-            y = (AVLTree.AVLNode) y.getParent();
-
+        long start = metrics == null ? 0 : System.nanoTime();
+        Node newNode = new Node(new Item(k, s));
+        int rotations = i == size() ? insertLast(newNode) : insertAt(i, newNode);
+        if (metrics != null) {
+            metrics.record(TreeMetrics.Operation.INSERT, start, rotations, -1);
         }
-
         return 0;
 
     }
@@ -89,26 +133,206 @@
      * @return
      * returns -1 if i smaller then 0 or i greater then n-1, otherwise returns 0.
      *  @implNote
-     *  1. first finds the requested node by getNodeByIndex(int index). If found then: <br>
-     *     1.1. sets its children and parent and gets the node to start fix the height and sizes from -
-     *       by the method  AVLTree.setParentAndChildrenOnDelete_AndGetStartPoint(AVLNode node) <br>
-     *     1.2 fixes the sizes and heights (and does rotations) from the node gotten on 1.1 -
-     *       by the method AVLTree.fixHeightAndSizeOnDelete_AndGetNumOfRotations(AVLNode startFixingFrom)
+     *  1. first finds the requested node by getNodeByIndex(int index). If found then (by deleteNode(Node node)): <br>
+     *     1.1. unlinks it - or, if it has two children, puts its successor in its place <br>
+     *     1.2 fixes the sizes and heights (and does rotations) from the lowest node whose subtree changed (see fixUp)
      */
     public int delete(int i) {
+        TreeMetrics metrics = this.metrics;
         if(! isIndexValidRetrieveAndDelete(i)) {
+            if (metrics != null) {
+                metrics.recordFailure(TreeMetrics.Operation.DELETE);
+            }
+            return -1;
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        int rotations = deleteNode(getNodeByIndex(i));
+        if (metrics != null) {
+            metrics.record(TreeMetrics.Operation.DELETE, start, rotations, -1);
+        }
+        return 0;
+    }
+
+
+
+    /**
+     * inserts items to the list from the ith position on, in their order: keys[j] (with info infos[j]) becomes the
+     * item in position i + j.
+     * @param i index to be filled with the first item inserted
+     * @param keys the keys of the items inserted
+     * @param infos infos[j] is the value of the item with key keys[j]
+     * @return
+     * -1 if i smaller then 0 or i greater then n, or the arrays aren't of the same length, otherwise returns 0
+     * @implNote
+     * builds a balanced tree of the m items in O(m), splits the list at i and joins the three trees (see joinNodes) -
+     * O(m + logn), instead of m inserts which walk down from the root.
+     */
+    public int insertAll(int i, int[] keys, String[] infos) {
+        if (! isIndexValidInsert(i) || keys.length != infos.length) {
+            return -1;
+        }
+        if (keys.length == 0) {
+            return 0;
+        }
+        Node batch = buildBalanced(keys, infos, 0, keys.length, null);
+        Node[] parts = splitNodes(this.root, i);
+        this.root = joinNodes(joinNodes(parts[0], batch), parts[1]);
+        this.last = maxInSubTree(this.root);
+        return 0;
+    }
+
+    /**
+     * deletes the items in positions [from, to) from the list.
+     * @param from index of the first item deleted
+     * @param to index after the last item deleted
+     * @return
+     * -1 if from smaller then 0, to greater then n or from greater then to, otherwise returns 0
+     * @implNote
+     * splits the list at from and at to, and joins the outer parts (see joinNodes) - O(logn) whatever the size
+     * of the range, instead of a walk down and rebalance per item. the deleted nodes aren't unlinked one by one,
+     * so the cursors of the list are invalidated (see Cursor) - one left on a deleted item would change the
+     * deleted subtree, not the list.
+     */
+    public int deleteRange(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            return -1;
+        }
+        if (from == to) {
+            return 0;
+        }
+        Node[] parts = splitNodes(this.root, from);
+        Node[] rest = splitNodes(parts[1], to - from);
+        this.detachCount++;
+        this.root = joinNodes(parts[0], rest[1]);
+        this.last = this.root == null ? null : maxInSubTree(this.root);
+        return 0;
+    }
+
+    /**
+     * splits the list at an index, in O(logn) (rope style - no item is copied).
+     * @param index index of the first item of the second list
+     * @return
+     * an array {list of the items before index, list of the items from index on}. this list becomes empty
+     * (and its cursors are invalidated). <br>
+     * null if index smaller then 0 or greater then n (nothing is changed then)
+     * @implNote
+     * goes down the path to the index by the sizes, and joins the subtrees that hang off each side of the path
+     * (see joinNodes) - the joins along a path cost O(logn) in total.
+     */
+    public TreeList[] splitAt(int index) {
+        if (! isIndexValidInsert(index)) {
+            return null;
+        }
+        Node last = this.last;
+        Node[] parts = splitNodes(this.root, index);
+        this.detachCount++;
+        this.root = null;
+        this.last = null;
+        TreeList first = new TreeList();
+        first.root = parts[0];
+        first.last = parts[0] == null ? null : maxInSubTree(parts[0]);
+        TreeList second = new TreeList();
+        second.root = parts[1];
+        second.last = parts[1] == null ? null : last;
+        return new TreeList[]{first, second};
+    }
+
+    /**
+     * appends the items of another list to this list, in O(logn) (rope style - no item is copied).
+     * @param other the list to append, becomes empty (and its cursors are invalidated)
+     * @return
+     * 0, or -1 if other is this list (nothing is changed then)
+     * @implNote
+     * takes out the last node of this list and joins (see joinNodes) this tree, it and the tree of other.
+     */
+    public int concat(TreeList other) {
+        if (other == this) {
             return -1;
         }
-        AVLTree.AVLNode node = getNodeByIndex(i);
-        AVLTree.AVLNode startFixingFrom = rankedAvlTree.setParentAndChildrenOnDelete_AndGetStartPoint(node);
-        rankedAvlTree.fixHeightAndSizeOnDelete_AndGetNumOfRotations(startFixingFrom);
+        if (other.root != null) {
+            if (this.root == null) {
+                this.root = other.root;
+            }
+            else {
+                Node middle = this.last;
+                deleteNode(middle);
+                this.root = joinNodes(this.root, middle, other.root);
+            }
+            this.last = other.last;
+            other.detachCount++;
+            other.root = null;
+            other.last = null;
+        }
         return 0;
     }
 
+    /**
+     * starts recording retrieve (as SEARCH), insert and delete into metrics (see TreeMetrics). cursors aren't recorded.
+     * @param name name of the list, for JMX and JFR
+     * @return
+     * the new metrics of the list
+     */
+    public TreeMetrics enableMetrics(String name) {
+        this.metrics = new TreeMetrics(name, () -> { // read the root once, the gauges may be read by other threads
+            Node root = this.root;
+            return root == null ? -1 : root.height;
+        }, () -> size(this.root));
+        return this.metrics;
+    }
+
+    /**
+     * stops recording metrics (the operations then only check that the metrics are null).
+     */
+    public void disableMetrics() {
+        this.metrics = null;
+    }
+
+    /**
+     * @return
+     * the metrics of the list, or null if they are disabled
+     */
+    public TreeMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * returns a cursor (finger) on the item in the ith position, for accesses near each other: <br>
+     * it moves by index from the item it is on rather than from the root.
+     * @param i index of the item to start on
+     * @return
+     * a cursor on the ith item, or null if i smaller then 0 or i greater then n-1
+     */
+    public Cursor cursor(int i) {
+        if (! isIndexValidRetrieveAndDelete(i)) {
+            return null;
+        }
+        return new Cursor(getNodeByIndex(i), i);
+    }
+
+    /**
+     * returns a spliterator over the items by their order in the list, for (parallel) streams. <br>
+     * it splits at the middle index, found by the subtree sizes in O(logn) (see AVLTree.spliterator()). <br>
+     * SIZED, SUBSIZED, ORDERED, NONNULL - not SORTED, since the keys of a list aren't ordered.
+     * the list must not be changed while the spliterator is in use.
+     * @return
+     * a spliterator over all items of the list
+     */
+    public java.util.Spliterator<Item> spliterator() {
+        return new ItemSpliterator(0, size());
+    }
+
 
 
     // ----- helper methods ----
 
+    /**
+     * @return
+     * the number of items in the list
+     */
+    private int size() {
+        return size(this.root);
+    }
+
     /**
      * Get node which is in place (starts from 0) of the given index in the tree.
      * @param i index of requested item in the list
@@ -116,68 +340,590 @@
      * Item which is in the ith position if it exists in the Tree. <br>
      * Otherwise, returns null
      */
-    private AVLTree.AVLNode getNodeByIndex(int i) {
-        return select(i + 1);
+    private Node getNodeByIndex(int i) {
+        return selectInSubTree(this.root, i);
     }
 
     /**
-     * returns the node in position i (Rank) (starts from 1) in the Tree. <br>
-     * uses recursion by the inner method - selectRec().
-     * @param i index of requested node in the Tree
+     * returns the node in position i (starts from 0) of a subtree. <br>
+     * walks down in a loop (no recursion, no allocation).
+     * @param node root of the subtree
+     * @param i index of requested node in the subtree
      * @return
-     * node which is in the ith position if it exists in the Tree. <br>
+     * node which is in the ith position if it exists in the subtree. <br>
      * Otherwise, returns null
      */
-    private AVLTree.AVLNode select(int i) {
-        return selectRec((AVLTree.AVLNode) rankedAvlTree.getRoot(), i);
+    private static Node selectInSubTree(Node node, int i) {
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (i == leftSize) {
+                return node;
+            }
+            if (i < leftSize) {
+                node = node.left;
+            }
+            else { // the index i is in the right subtree
+                i -= leftSize + 1; // +1 for the current node
+                node = node.right;
+            }
+        }
+        return null; // didn't find
     }
 
     /**
-     * returns the node in position i (Rank) (starts from 1) in the Tree that node its root. <br>
-     * uses recursion, inner method of select()
-     * @param i index of requested node in the Tree that node its root. <br>
-     * @param node - the tree's root.
+     * inserts a node to be with the hightest (most right) rank in the Tree - as the right child of last.
+     * @param newNode node to be inserted most right of the tree.
      * @return
-     * node which is in the ith position if it exists in the Tree. <br>
-     * Otherwise, returns null
+     * the number of rotations done
+     */
+    private int insertLast(Node newNode) {
+        Node last = this.last;
+        this.last = newNode;
+        if (last == null) {
+            this.root = newNode;
+            return 0;
+        }
+        last.right = newNode;
+        newNode.parent = last;
+        return fixUp(last, 1);
+    }
+
+    /**
+     * links a new node as a leaf in position i (smaller than the size), by a single walk down from the root.
+     * @param i index of the new node
+     * @param newNode the new node
+     * @return
+     * the number of rotations done
+     */
+    private int insertAt(int i, Node newNode) {
+        Node parent = this.root;
+        while (true) {
+            int leftSize = size(parent.left);
+            if (i <= leftSize) {
+                if (parent.left == null) {
+                    parent.left = newNode;
+                    break;
+                }
+                parent = parent.left;
+            }
+            else {
+                i -= leftSize + 1;
+                if (parent.right == null) {
+                    parent.right = newNode;
+                    break;
+                }
+                parent = parent.right;
+            }
+        }
+        newNode.parent = parent;
+        return fixUp(parent, 1);
+    }
+
+    /**
+     * links a new node right before a node of the tree (as its left child, or as the right child of its predecessor),
+     * and updates height, size and commits rotations in the path to the root.
+     * @param next node which will follow the new node, or null to insert it last
+     * @param newNode the new node
+     * @return
+     * the number of rotations done
      */
-    private AVLTree.AVLNode selectRec(AVLTree.AVLNode node, int i) {
-        if (node == null || i <= 0) { // didn't find
+    private int insertBefore(Node next, Node newNode) {
+        if (next == null) {
+            return insertLast(newNode);
+        }
+        Node parent;
+        if (next.left == null) {
+            parent = next;
+            next.left = newNode;
+        }
+        else {
+            parent = maxInSubTree(next.left);
+            parent.right = newNode;
+        }
+        newNode.parent = parent;
+        return fixUp(parent, 1);
+    }
+
+    /**
+     * deletes a node of the tree (see delete(int i)). the other nodes keep their identity (a node with two children
+     * is replaced by its successor node, not by its item), so cursors on them stay valid.
+     * @param node the node to delete
+     * @return
+     * the number of rotations done
+     */
+    private int deleteNode(Node node) {
+        if (node == this.last) {
+            this.last = predecessor(node);
+        }
+        Node startFixingFrom;
+        if (node.left != null && node.right != null) {
+            Node successor = minInSubTree(node.right);
+            if (successor.parent == node) {
+                startFixingFrom = successor;
+            }
+            else {
+                startFixingFrom = successor.parent;
+                successor.parent.left = successor.right;
+                if (successor.right != null) {
+                    successor.right.parent = successor.parent;
+                }
+                successor.right = node.right;
+                node.right.parent = successor;
+            }
+            successor.left = node.left;
+            node.left.parent = successor;
+            replaceChild(node, successor);
+            successor.height = node.height; // its place's, fixUp compares to them
+            successor.size = node.size;
+        }
+        else {
+            startFixingFrom = node.parent;
+            replaceChild(node, node.left != null ? node.left : node.right);
+        }
+        node.parent = node.left = node.right = null; // an item the user holds doesn't keep the tree
+        return startFixingFrom == null ? 0 : fixUp(startFixingFrom, -1);
+    }
+
+    /**
+     * fixes the path from a node up to the root after one node was linked (sizeDelta 1) or unlinked (-1) below it.
+     * specialized for a ranked tree: once the height of a subtree is as it was (always, after a rotation on insert),
+     * the heights and balance above it don't change, so the rest of the path only gets its sizes updated.
+     * @param node lowest node whose subtree changed
+     * @param sizeDelta 1 or -1
+     * @return
+     * the number of rotations done (a double rotation counts as 2, as in AVLTree)
+     */
+    private int fixUp(Node node, int sizeDelta) {
+        int rotations = 0;
+        while (node != null) {
+            node.size += sizeDelta;
+            int oldHeight = node.height;
+            int bf = height(node.left) - height(node.right);
+            Node top = node;
+            if (bf == 2) {
+                if (height(node.left.left) < height(node.left.right)) {
+                    rotateLeft(node.left);
+                    rotations++;
+                }
+                top = rotateRight(node);
+                rotations++;
+            }
+            else if (bf == -2) {
+                if (height(node.right.right) < height(node.right.left)) {
+                    rotateRight(node.right);
+                    rotations++;
+                }
+                top = rotateLeft(node);
+                rotations++;
+            }
+            else {
+                node.height = 1 + Math.max(height(node.left), height(node.right));
+            }
+            if (top.height == oldHeight) {
+                for (Node p = top.parent; p != null; p = p.parent) {
+                    p.size += sizeDelta;
+                }
+                return rotations;
+            }
+            node = top.parent;
+        }
+        return rotations;
+    }
+
+    /**
+     * rotates a node with its left child to the right
+     * @param node the node
+     * @return
+     * the left child, which took its place
+     */
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = node;
+        }
+        replaceChild(node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+        setHeightAndSizeByChildren(node);
+        setHeightAndSizeByChildren(pivot);
+        return pivot;
+    }
+
+    /**
+     * rotates a node with its right child to the left
+     * @param node the node
+     * @return
+     * the right child, which took its place
+     */
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = node;
+        }
+        replaceChild(node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+        setHeightAndSizeByChildren(node);
+        setHeightAndSizeByChildren(pivot);
+        return pivot;
+    }
+
+    /**
+     * puts a node (or null) in the place of another node under its parent, or as the root
+     * @param node the node being replaced
+     * @param replacement the node taking its place
+     */
+    private void replaceChild(Node node, Node replacement) {
+        Node parent = node.parent;
+        if (parent == null) {
+            this.root = replacement;
+        }
+        else if (parent.left == node) {
+            parent.left = replacement;
+        }
+        else {
+            parent.right = replacement;
+        }
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
+    }
+
+    /**
+     * splits a subtree by an index (consuming it).
+     * @param node root of a subtree
+     * @param index index (in the subtree) of the first node of the second part
+     * @return
+     * {root of the nodes before index, root of the nodes from index on}
+     */
+    private static Node[] splitNodes(Node node, int index) {
+        if (node == null) {
+            return new Node[2];
+        }
+        Node left = node.left, right = node.right;
+        if (left != null) {
+            left.parent = null;
+        }
+        if (right != null) {
+            right.parent = null;
+        }
+        int leftSize = size(left);
+        if (index <= leftSize) {
+            Node[] parts = splitNodes(left, index);
+            parts[1] = joinNodes(parts[1], node, right);
+            return parts;
+        }
+        Node[] parts = splitNodes(right, index - leftSize - 1);
+        parts[0] = joinNodes(left, node, parts[0]);
+        return parts;
+    }
+
+    /**
+     * joins two subtrees (consuming them): the nodes of left, then the nodes of right.
+     * @param left root of a subtree (may be null)
+     * @param right root of a subtree (may be null)
+     * @return
+     * root of the joined subtree
+     */
+    private static Node joinNodes(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        Node[] parts = splitNodes(left, size(left) - 1); // takes out the last node of left, as the middle
+        return joinNodes(parts[0], parts[1], right);
+    }
+
+    /**
+     * joins two subtrees with a middle node between them (consuming them): the nodes of left, then middle,
+     * then the nodes of right.
+     * @param left root of a subtree (may be null)
+     * @param middle a detached node
+     * @param right root of a subtree (may be null)
+     * @return
+     * root of the joined (balanced) subtree
+     * @implNote
+     * hangs middle and the lower subtree on the spine of the higher subtree, where the heights meet,
+     * and rebalances on the way back up - O(|height(left) - height(right)| + 1) (as AVLTree.join).
+     */
+    private static Node joinNodes(Node left, Node middle, Node right) {
+        int leftHeight = height(left), rightHeight = height(right);
+        Node joined;
+        if (leftHeight > rightHeight + 1) {
+            joined = joinRight(left, middle, right);
+        }
+        else if (rightHeight > leftHeight + 1) {
+            joined = joinLeft(left, middle, right);
+        }
+        else {
+            joined = link(left, middle, right);
+        }
+        joined.parent = null;
+        return joined;
+    }
+
+    /**
+     * joinNodes when left is higher than right by more than 1 - goes down the right spine of left.
+     */
+    private static Node joinRight(Node left, Node middle, Node right) {
+        Node spineLeft = left.left, spineRight = left.right;
+        if (height(spineRight) <= height(right) + 1) {
+            Node joined = link(spineRight, middle, right);
+            if (height(joined) <= height(spineLeft) + 1) {
+                return link(spineLeft, left, joined);
+            }
+            return rotateLeftDetached(link(spineLeft, left, rotateRightDetached(joined)));
+        }
+        Node joined = joinRight(spineRight, middle, right);
+        Node result = link(spineLeft, left, joined);
+        if (height(joined) <= height(spineLeft) + 1) {
+            return result;
+        }
+        return rotateLeftDetached(result);
+    }
+
+    /**
+     * joinNodes when right is higher than left by more than 1 - goes down the left spine of right.
+     */
+    private static Node joinLeft(Node left, Node middle, Node right) {
+        Node spineLeft = right.left, spineRight = right.right;
+        if (height(spineLeft) <= height(left) + 1) {
+            Node joined = link(left, middle, spineLeft);
+            if (height(joined) <= height(spineRight) + 1) {
+                return link(joined, right, spineRight);
+            }
+            return rotateRightDetached(link(rotateLeftDetached(joined), right, spineRight));
+        }
+        Node joined = joinLeft(left, middle, spineLeft);
+        Node result = link(joined, right, spineRight);
+        if (height(joined) <= height(spineRight) + 1) {
+            return result;
+        }
+        return rotateRightDetached(result);
+    }
+
+    /**
+     * makes left and right the children of node, and sets its height and size.
+     * @return
+     * node (with no parent)
+     */
+    private static Node link(Node left, Node node, Node right) {
+        node.left = left;
+        node.right = right;
+        if (left != null) {
+            left.parent = node;
+        }
+        if (right != null) {
+            right.parent = node;
+        }
+        node.parent = null;
+        setHeightAndSizeByChildren(node);
+        return node;
+    }
+
+    /**
+     * rotation to the left of a subtree which isn't linked to a parent (so the root is not touched)
+     * @param x root of the subtree
+     * @return
+     * the new root of the subtree
+     */
+    private static Node rotateLeftDetached(Node x) {
+        Node y = x.right;
+        link(x.left, x, y.left);
+        return link(x, y, y.right);
+    }
+
+    /**
+     * rotation to the right of a subtree which isn't linked to a parent (so the root is not touched)
+     * @param x root of the subtree
+     * @return
+     * the new root of the subtree
+     */
+    private static Node rotateRightDetached(Node x) {
+        Node y = x.left;
+        link(y.right, x, x.right);
+        return link(y.left, y, x);
+    }
+
+    /**
+     * builds a perfectly balanced subtree of the items keys[from..to) (with their infos) in their order (see insertAll)
+     * @param keys the keys
+     * @param infos infos[j] is the value of the item with key keys[j]
+     * @param from index of the first item
+     * @param to index after the last item
+     * @param parent the parent of the subtree's root
+     * @return
+     * the root of the subtree, or null if it is empty
+     */
+    private static Node buildBalanced(int[] keys, String[] infos, int from, int to, Node parent) {
+        if (from == to) {
             return null;
         }
+        int mid = (from + to) >>> 1;
+        Node node = new Node(new Item(keys[mid], infos[mid]));
+        node.parent = parent;
+        node.left = buildBalanced(keys, infos, from, mid, node);
+        node.right = buildBalanced(keys, infos, mid + 1, to, node);
+        setHeightAndSizeByChildren(node);
+        return node;
+    }
 
-        int leftSize = node.getLeft() == null ? 0 :  ((AVLTree.AVLNode)(node.getLeft())).getSize();
-        if (i == leftSize + 1) {
-            return node;
+    /**
+     * builds a perfectly balanced subtree of count items in their order (see bulkLoad)
+     * @param items iterator over the items
+     * @param count number of items in the subtree
+     * @param parent the parent of the subtree's root
+     * @return
+     * the root of the subtree, or null if it is empty or the iterator ended
+     */
+    private static Node buildBalanced(java.util.Iterator<Item> items, int count, Node parent) {
+        if (count == 0) {
+            return null;
         }
-        if (leftSize + 1 < i) { // the index i is in the right subtree
-            return selectRec((AVLTree.AVLNode) node.getRight(), i - leftSize - 1); // -1 for the current node
+        int leftCount = count / 2;
+        Node left = buildBalanced(items, leftCount, null);
+        if ((left == null && leftCount > 0) || !items.hasNext()) {
+            return null;
+        }
+        Node node = new Node(items.next()); // an Item is immutable, so the node can hold the one it was given
+        node.parent = parent;
+        node.left = left;
+        if (left != null) {
+            left.parent = node;
         }
-        return selectRec((AVLTree.AVLNode)node.getLeft(), i); // otherwise(leftSize + 1 > i) go left
+        int rightCount = count - leftCount - 1;
+        node.right = buildBalanced(items, rightCount, node);
+        if (node.right == null && rightCount > 0) {
+            return null;
+        }
+        setHeightAndSizeByChildren(node);
+        return node;
     }
 
     /**
-     * inserts a node to be with the hightest (most right) rank in the Tree.
-     * @param newNode node to be inserted most right of the tree.
+     * returns the node d positions away from a node, by climbing only as high as needed and then selecting down -
+     * O(log d).
+     * @param node a node of the tree
+     * @param d number of positions to move, negative to move backwards
+     * @return
+     * the node in the position of node + d, or null if there is no such node
+     */
+    private static Node moveByRank(Node node, int d) {
+        while (d > 0) {
+            int rightSize = size(node.right);
+            if (d <= rightSize) {
+                return selectInSubTree(node.right, d - 1);
+            }
+            d -= rightSize;
+            while (node.parent != null && node == node.parent.right) { // these ancestors are all before node
+                node = node.parent;
+            }
+            if (node.parent == null) {
+                return null;
+            }
+            node = node.parent;
+            d--;
+        }
+        while (d < 0) {
+            int leftSize = size(node.left);
+            if (-d <= leftSize) {
+                return selectInSubTree(node.left, leftSize + d);
+            }
+            d += leftSize;
+            while (node.parent != null && node == node.parent.left) { // these ancestors are all after node
+                node = node.parent;
+            }
+            if (node.parent == null) {
+                return null;
+            }
+            node = node.parent;
+            d++;
+        }
+        return node;
+    }
+
+    /**
+     * @param node a node of the tree
+     * @return
+     * the node after it in the list, or null if it is the last
+     */
+    private static Node successor(Node node) {
+        if (node.right != null) {
+            return minInSubTree(node.right);
+        }
+        while (node.parent != null && node == node.parent.right) {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+
+    /**
+     * @param node a node of the tree
+     * @return
+     * the node before it in the list, or null if it is the first
+     */
+    private static Node predecessor(Node node) {
+        if (node.left != null) {
+            return maxInSubTree(node.left);
+        }
+        while (node.parent != null && node == node.parent.left) {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+
+    private static Node minInSubTree(Node node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static Node maxInSubTree(Node node) {
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /**
+     * @param node a node of the tree
+     * @return
+     * the number of edges from the root to the node
      */
-    private void insertLast(AVLTree.AVLNode newNode) {
-        AVLTree.AVLNode maxNode = rankedAvlTree.getMaxInSubTree((AVLTree.AVLNode)rankedAvlTree.getRoot());
-        if(maxNode != null) {
-            maxNode.setRight(newNode);
-            newNode.setParent(maxNode);
-        }else{
-            rankedAvlTree.setRoot(newNode);
+    private static int depth(Node node) {
+        int depth = 0;
+        for (Node p = node.parent; p != null; p = p.parent) {
+            depth++;
         }
+        return depth;
+    }
+
+    private static void setHeightAndSizeByChildren(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int height(Node node) {
+        return node == null ? -1 : node.height;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
     }
 
     /**
      * checks if index i is valid for retrieve and delete operations.
      * @param i index to be checked if valid.
      * @return
-     * true - if valid, else (smaller the 0 or greater or equals to rankedAvlTree size)- false
+     * true - if valid, else (smaller the 0 or greater or equals to the list size)- false
      */
     private boolean isIndexValidRetrieveAndDelete(int i) {
-        int size = this.rankedAvlTree.size();
+        int size = size();
         if (i < 0 || i >= size) {
             return false;
         }
@@ -189,14 +935,222 @@
      * @param
      * i index to be checked if valid.
      * @return
-     * true - if valid, else (smaller the 0 or greater then rankedAvlTree size)- false
+     * true - if valid, else (smaller the 0 or greater then the list size)- false
      */
     private boolean isIndexValidInsert(int i) {
-        int size = this.rankedAvlTree.size();
+        int size = size();
         if (i < 0 || i > size) {
             return false;
         }
         return true;
     }
 
-}
\ No newline at end of file
+
+    /**
+     * a node of the ranked tree. it holds its Item (as AVLNode does) - retrieve returns the Item, which references
+     * nothing, so a caller keeping it doesn't keep the node's subtree alive. it has no reference to an outer tree.
+     */
+    private static final class Node {
+        private final Item item;
+        private Node parent;
+        private Node left;
+        private Node right;
+        private int height;
+        private int size = 1;
+
+        Node(Item item) {
+            this.item = item;
+        }
+    }
+
+    /**
+     * a spliterator over the items of positions [from, to). <br>
+     * the first node is found by select when the spliterator starts, the following ones by successors (O(1) amortized).
+     * trySplit hands the lower half of the positions to a new spliterator.
+     */
+    private class ItemSpliterator implements java.util.Spliterator<Item> {
+        private int from;
+        private final int to;
+        /**
+         * the node of position from, or null if it wasn't found yet
+         */
+        private Node next;
+
+        ItemSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public boolean tryAdvance(java.util.function.Consumer<? super Item> action) {
+            if (this.from >= this.to) {
+                return false;
+            }
+            Node node = this.next == null ? getNodeByIndex(this.from) : this.next;
+            this.from++;
+            this.next = this.from < this.to ? successor(node) : null;
+            action.accept(node.item);
+            return true;
+        }
+
+        public void forEachRemaining(java.util.function.Consumer<? super Item> action) {
+            if (this.from >= this.to) {
+                return;
+            }
+            Node node = this.next == null ? getNodeByIndex(this.from) : this.next;
+            int count = this.to - this.from;
+            this.from = this.to;
+            this.next = null;
+            for (int i = 0; i < count; i++) {
+                action.accept(node.item);
+                node = successor(node);
+            }
+        }
+
+        public java.util.Spliterator<Item> trySplit() {
+            if (this.to - this.from < 2) {
+                return null;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            ItemSpliterator lower = new ItemSpliterator(this.from, mid);
+            lower.next = this.next;
+            this.from = mid;
+            this.next = null;
+            return lower;
+        }
+
+        public long estimateSize() {
+            return this.to - this.from;
+        }
+
+        public int characteristics() {
+            return java.util.Spliterator.SIZED | java.util.Spliterator.SUBSIZED | java.util.Spliterator.ORDERED
+                    | java.util.Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * a cursor (finger) which stays on an item of the list and knows its index. move starts from that item,
+     * so it costs O(log d) where d is the distance moved (the sizes and heights above an inserted / deleted item
+     * are still fixed up to the root). <br>
+     * the cursor stays valid while only it changes the list - inserting or deleting through the list
+     * before its item leaves its index wrong. <br>
+     * deleteRange, splitAt, and concat of the list into another invalidate it: its methods then throw
+     * ConcurrentModificationException, since its item may no longer be in the list.
+     */
+    public class Cursor {
+        /**
+         * the node the cursor is on, null once the list became empty
+         */
+        private Node node;
+        private int index;
+        /**
+         * the list's detachCount when the cursor was made
+         */
+        private final int expectedDetachCount;
+
+        Cursor(Node node, int index) {
+            this.node = node;
+            this.index = index;
+            this.expectedDetachCount = TreeList.this.detachCount;
+        }
+
+        /**
+         * @return
+         * the index of the item the cursor is on, or -1 if the list became empty
+         */
+        public int getIndex() {
+            checkValid();
+            return this.node == null ? -1 : this.index;
+        }
+
+        /**
+         * @return
+         * the item the cursor is on, or null if the list became empty
+         */
+        public Item getItem() {
+            checkValid();
+            return this.node == null ? null : this.node.item;
+        }
+
+        /**
+         * moves the cursor d items forward (or backward, if d is negative), in O(log d).
+         * @param d number of items to move
+         * @return
+         * true if moved, false if there is no item d items away (the cursor stays)
+         */
+        public boolean move(int d) {
+            checkValid();
+            if (this.node == null) {
+                return false;
+            }
+            Node target = moveByRank(this.node, d);
+            if (target == null) {
+                return false;
+            }
+            this.node = target;
+            this.index += d;
+            return true;
+        }
+
+        /**
+         * moves the cursor to the item in the ith position, from the item it is on.
+         * @param i index to move to
+         * @return
+         * true if moved, false if i smaller then 0 or i greater then n-1 (the cursor stays)
+         */
+        public boolean moveTo(int i) {
+            return move(i - this.index);
+        }
+
+        /**
+         * inserts an item with key k and info s at the cursor's index (before the item it was on),
+         * and moves the cursor to the new item.
+         * @param k the key of the item inserted
+         * @param s the value of the item inserted
+         * @return
+         * 0
+         */
+        public int insertAtCursor(int k, String s) {
+            checkValid();
+            Node newNode = new Node(new Item(k, s));
+            if (this.node == null) { // the list became empty
+                this.index = 0;
+            }
+            insertBefore(this.node, newNode);
+            this.node = newNode;
+            return 0;
+        }
+
+        /**
+         * deletes the item the cursor is on, and moves the cursor to the item after it (before it, if it was the last).
+         * @return
+         * 0, or -1 if the list is empty
+         */
+        public int deleteAtCursor() {
+            checkValid();
+            Node deleted = this.node;
+            if (deleted == null) {
+                return -1;
+            }
+            Node next = successor(deleted);
+            if (next == null) { // nodes keep their identity on delete, so next stays valid
+                next = predecessor(deleted);
+                this.index--;
+            }
+            this.node = next;
+            deleteNode(deleted);
+            return 0;
+        }
+
+        /**
+         * @throws java.util.ConcurrentModificationException if the list moved nodes out since the cursor was made
+         */
+        private void checkValid() {
+            if (TreeList.this.detachCount != this.expectedDetachCount) {
+                throw new java.util.ConcurrentModificationException(
+                        "the list had a range deleted, was split or was concatenated into another since the cursor was made");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Metrics of one AVLTree or TreeList: operation counts, rotations, search path lengths, height vs. the AVL bound,
+ * and a latency histogram per operation. <br>
+ * A tree records into its metrics only while they are enabled (AVLTree.enableMetrics / TreeList.enableMetrics),
+ * otherwise its operations only check a null field. <br>
+ * The metrics can be read directly, through JMX (registerMBean), and as JFR events
+ * (avltree.Operation - one per operation, recorded only while enabled in the JFR recording). <br>
+ * Recording is thread safe, so a single TreeMetrics may be read while its tree is used.
+ */
+public class TreeMetrics implements TreeMetricsMXBean {
+
+	/**
+	 * the measured operations. TreeList.retrieve is counted as a SEARCH.
+	 */
+	public enum Operation { SEARCH, INSERT, DELETE }
+
+	private static final EventType OPERATION_EVENT = EventType.getEventType(OperationEvent.class);
+
+	private final String name;
+	private final IntSupplier height;
+	private final IntSupplier size;
+
+	private final LongAdder[] counts = new LongAdder[Operation.values().length];
+	/**
+	 * inserts / deletes which changed nothing (returned -1) - not counted as operations, nor in the latencies
+	 */
+	private final LongAdder[] failures = new LongAdder[Operation.values().length];
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+	private final LongAdder rotations = new LongAdder();
+	private final LongAdder searchPathNodes = new LongAdder();
+	private volatile long startNanos;
+	private ObjectName objectName;
+
+	/**
+	 * @param name name of the tree, used by JMX and JFR
+	 * @param height returns the current height of the tree
+	 * @param size returns the current size of the tree
+	 */
+	TreeMetrics(String name, IntSupplier height, IntSupplier size) {
+		this.name = name;
+		this.height = height;
+		this.size = size;
+		for (int op = 0; op < this.counts.length; op++) {
+			this.counts[op] = new LongAdder();
+			this.failures[op] = new LongAdder();
+			this.latencies[op] = new LatencyHistogram();
+		}
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * records a finished operation (a successful one, for an insert / delete - see recordFailure).
+	 * @param operation the operation
+	 * @param startNanos System.nanoTime() when the operation started
+	 * @param rotations rotations done by the operation (0 for a search)
+	 * @param pathLength nodes visited by a search, or -1 for an insert / delete
+	 */
+	void record(Operation operation, long startNanos, int rotations, int pathLength) {
+		long latency = System.nanoTime() - startNanos;
+		this.counts[operation.ordinal()].increment();
+		this.latencies[operation.ordinal()].record(latency);
+		if (rotations > 0) {
+			this.rotations.add(rotations);
+		}
+		if (pathLength >= 0) {
+			this.searchPathNodes.add(pathLength);
+		}
+		if (OPERATION_EVENT.isEnabled()) {
+			OperationEvent event = new OperationEvent();
+			event.tree = this.name;
+			event.operation = operation.name();
+			event.latency = latency;
+			event.rotations = rotations;
+			event.pathLength = pathLength;
+			event.height = this.height.getAsInt();
+			event.size = this.size.getAsInt();
+			event.commit();
+		}
+	}
+
+	/**
+	 * records an insert / delete which failed (returned -1), apart from the operations
+	 * @param operation the operation
+	 */
+	void recordFailure(Operation operation) {
+		this.failures[operation.ordinal()].increment();
+	}
+
+	/**
+	 * registers these metrics with the platform MBean server as "AVLTree:type=TreeMetrics,name=(name of the tree)".
+	 * @throws JMException if the name is taken or invalid
+	 */
+	public synchronized void registerMBean() throws JMException {
+		if (this.objectName == null) {
+			ObjectName objectName = new ObjectName("AVLTree", new java.util.Hashtable<>(java.util.Map.of(
+					"type", "TreeMetrics", "name", ObjectName.quote(this.name))));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.objectName = objectName;
+		}
+	}
+
+	/**
+	 * unregisters these metrics from the platform MBean server, if they are registered.
+	 * @throws JMException if unregistering fails
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		if (this.objectName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+			this.objectName = null;
+		}
+	}
+
+	/**
+	 * @return
+	 * the name of the tree
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @param operation an operation
+	 * @return
+	 * the number of times it was done (inserts / deletes - successfully)
+	 */
+	public long getCount(Operation operation) {
+		return this.counts[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation an operation
+	 * @return
+	 * the number of times it failed (an insert of an existing key / index out of range, a delete of a missing one)
+	 */
+	public long getFailureCount(Operation operation) {
+		return this.failures[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation an operation
+	 * @param percentile between 0 and 100
+	 * @return
+	 * the latency (nanoseconds, within 12.5%) which that percentile of the operations didn't exceed, 0 if none were done
+	 */
+	public long getLatencyPercentile(Operation operation, double percentile) {
+		return this.latencies[operation.ordinal()].percentile(percentile);
+	}
+
+	public long getSearches() { return getCount(Operation.SEARCH); }
+	public long getInserts() { return getCount(Operation.INSERT); }
+	public long getDeletes() { return getCount(Operation.DELETE); }
+	public long getFailedInserts() { return getFailureCount(Operation.INSERT); }
+	public long getFailedDeletes() { return getFailureCount(Operation.DELETE); }
+
+	public double getOpsPerSecond() {
+		double seconds = (System.nanoTime() - this.startNanos) / 1e9;
+		return seconds <= 0 ? 0 : (getSearches() + getInserts() + getDeletes()) / seconds;
+	}
+
+	public long getRotations() {
+		return this.rotations.sum();
+	}
+
+	public double getRotationsPerUpdate() {
+		long updates = getInserts() + getDeletes();
+		return updates == 0 ? 0 : (double) getRotations() / updates;
+	}
+
+	public double getMeanSearchPathLength() {
+		long searches = getSearches();
+		return searches == 0 ? 0 : (double) this.searchPathNodes.sum() / searches;
+	}
+
+	public int getHeight() {
+		return this.height.getAsInt();
+	}
+
+	public int getSize() {
+		return this.size.getAsInt();
+	}
+
+	public double getHeightBound() {
+		return 1.44 * (Math.log(getSize() + 2) / Math.log(2)) - 0.328;
+	}
+
+	public long getSearchLatencyP50() { return getLatencyPercentile(Operation.SEARCH, 50); }
+	public long getSearchLatencyP99() { return getLatencyPercentile(Operation.SEARCH, 99); }
+	public long getSearchLatencyMax() { return getLatencyPercentile(Operation.SEARCH, 100); }
+	public long getInsertLatencyP50() { return getLatencyPercentile(Operation.INSERT, 50); }
+	public long getInsertLatencyP99() { return getLatencyPercentile(Operation.INSERT, 99); }
+	public long getInsertLatencyMax() { return getLatencyPercentile(Operation.INSERT, 100); }
+	public long getDeleteLatencyP50() { return getLatencyPercentile(Operation.DELETE, 50); }
+	public long getDeleteLatencyP99() { return getLatencyPercentile(Operation.DELETE, 99); }
+	public long getDeleteLatencyMax() { return getLatencyPercentile(Operation.DELETE, 100); }
+
+	public void reset() {
+		for (int op = 0; op < this.counts.length; op++) {
+			this.counts[op].reset();
+			this.failures[op].reset();
+			this.latencies[op].reset();
+		}
+		this.rotations.reset();
+		this.searchPathNodes.reset();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * a log-linear histogram of non negative values (HdrHistogram style): every power of 2 is cut into
+	 * 2^SUB_BUCKET_BITS buckets, so a value is known within 1 / 2^SUB_BUCKET_BITS of itself, in a fixed number of counters.
+	 */
+	static final class LatencyHistogram {
+		private static final int SUB_BUCKET_BITS = 3;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			this.counts.incrementAndGet(bucketOf(value));
+			this.max.accumulate(value);
+		}
+
+		/**
+		 * @param percentile between 0 and 100
+		 * @return
+		 * the highest value of the bucket which holds that percentile (at most the max recorded), 0 if empty
+		 */
+		long percentile(double percentile) {
+			long total = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				total += this.counts.get(b);
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += this.counts.get(b);
+				if (seen >= rank) {
+					return Math.min(highestValueOf(b), this.max.get());
+				}
+			}
+			return this.max.get();
+		}
+
+		void reset() {
+			for (int b = 0; b < BUCKETS; b++) {
+				this.counts.set(b, 0);
+			}
+			this.max.reset();
+		}
+
+		/**
+		 * values below 2^SUB_BUCKET_BITS have a bucket each; above that the bucket is chosen by the highest bit
+		 * (the power of 2) and the SUB_BUCKET_BITS bits after it.
+		 */
+		static int bucketOf(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+			return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+		}
+
+		static long highestValueOf(int bucket) {
+			if (bucket < 2 * SUB_BUCKETS) {
+				return bucket;
+			}
+			int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+			long top = (bucket & (SUB_BUCKETS - 1)) | SUB_BUCKETS;
+			return ((top + 1) << shift) - 1;
+		}
+	}
+
+	/**
+	 * a JFR event of a single tree operation
+	 */
+	@Name("avltree.Operation")
+	@Label("AVL Tree Operation")
+	@Category("AVL Tree")
+	@Description("A search / insert / delete on an AVLTree or TreeList with metrics enabled")
+	static final class OperationEvent extends Event {
+		@Label("Tree")
+		String tree;
+		@Label("Operation")
+		String operation;
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+		@Label("Rotations")
+		int rotations;
+		@Label("Search Path Length")
+		int pathLength;
+		@Label("Height")
+		int height;
+		@Label("Size")
+		int size;
+	}
+}
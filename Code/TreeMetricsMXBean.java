@@ -0,0 +1,81 @@
+/**
+ * The JMX view of a TreeMetrics (registered by TreeMetrics.registerMBean). <br>
+ * Counters are totals since the metrics were created or reset, latencies are in nanoseconds.
+ */
+public interface TreeMetricsMXBean {
+
+	long getSearches();
+
+	long getInserts();
+
+	long getDeletes();
+
+	/**
+	 * @return
+	 * inserts / deletes which changed nothing (they aren't counted by getInserts / getDeletes, the rates and latencies)
+	 */
+	long getFailedInserts();
+
+	long getFailedDeletes();
+
+	/**
+	 * @return
+	 * operations per second since the metrics were created or reset
+	 */
+	double getOpsPerSecond();
+
+	long getRotations();
+
+	/**
+	 * @return
+	 * rotations per successful insert / delete
+	 */
+	double getRotationsPerUpdate();
+
+	/**
+	 * @return
+	 * mean number of nodes visited by a search
+	 */
+	double getMeanSearchPathLength();
+
+	/**
+	 * @return
+	 * the current height of the tree (-1 if empty)
+	 */
+	int getHeight();
+
+	/**
+	 * @return
+	 * the current number of nodes in the tree
+	 */
+	int getSize();
+
+	/**
+	 * @return
+	 * the worst case height of an AVL tree of the current size: 1.44 * log2(n + 2) - 0.328
+	 */
+	double getHeightBound();
+
+	long getSearchLatencyP50();
+
+	long getSearchLatencyP99();
+
+	long getSearchLatencyMax();
+
+	long getInsertLatencyP50();
+
+	long getInsertLatencyP99();
+
+	long getInsertLatencyMax();
+
+	long getDeleteLatencyP50();
+
+	long getDeleteLatencyP99();
+
+	long getDeleteLatencyMax();
+
+	/**
+	 * zeroes all counters and histograms
+	 */
+	void reset();
+}
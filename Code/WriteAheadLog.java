@@ -0,0 +1,383 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of tree mutations (records), with group commit: append only queues a record, and a committer
+ * thread writes all the queued records with one write and makes them durable with one FileChannel.force,
+ * then completes their futures. So writers pipeline their mutations and wait (if at all) only on the futures. <br>
+ * A record on disk: payload length (int), CRC32 of the payload (int), payload: operation (byte), index (int),
+ * key (int), info length (int, -1 means null) and the UTF-8 info. replay stops at the first torn or corrupt record
+ * (the tail of a crash) and cuts it off, so later appends follow the last valid record.
+ */
+public class WriteAheadLog implements Closeable {
+
+	/**
+	 * when the futures of appended records complete
+	 */
+	public enum SyncPolicy {
+		/**
+		 * after the group of records which includes them was forced to the disk (survives an OS crash)
+		 */
+		ALWAYS,
+		/**
+		 * the same as ALWAYS, but the committer waits BATCH_WINDOW_MILLIS from the first queued record
+		 * to gather bigger groups - fewer forces, higher latency
+		 */
+		BATCHED,
+		/**
+		 * after they were written to the file, without forcing it (survives a crash of the process only)
+		 */
+		NONE
+	}
+
+	/**
+	 * how long a BATCHED committer gathers records before writing them
+	 */
+	public static final long BATCH_WINDOW_MILLIS = 5;
+
+	static final byte OP_INSERT = 1, OP_DELETE = 2, OP_LIST_INSERT = 3, OP_LIST_DELETE = 4;
+	private static final int RECORD_HEADER_BYTES = 8;
+	private static final int PAYLOAD_FIXED_BYTES = 1 + 4 + 4 + 4;
+
+	private final FileChannel channel;
+	private final SyncPolicy policy;
+	private final Thread committer;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition queued = this.lock.newCondition();
+	/**
+	 * records waiting for the committer, and their futures
+	 */
+	private List<ByteBuffer> pending = new ArrayList<>();
+	private List<CompletableFuture<Void>> pendingFutures = new ArrayList<>();
+	/**
+	 * future of the last appended record, completes after all the records before it
+	 */
+	private CompletableFuture<Void> lastFuture = CompletableFuture.completedFuture(null);
+	private boolean closed;
+	/**
+	 * the first write / force failure - every later append fails with it
+	 */
+	private IOException failure;
+
+	private WriteAheadLog(FileChannel channel, SyncPolicy policy, String name) {
+		this.channel = channel;
+		this.policy = policy;
+		this.committer = new Thread(this::commitLoop, "wal-committer-" + name);
+		this.committer.setDaemon(true);
+	}
+
+	/**
+	 * opens the log in file (created if it doesn't exist) and replays its records.
+	 * @param file the log file
+	 * @param policy when appended records are considered committed
+	 * @param replay gets every valid record in the file, in order
+	 * @return
+	 * the log, ready to append after the last valid record
+	 * @throws IOException if the file can't be opened or read
+	 */
+	public static WriteAheadLog open(Path file, SyncPolicy policy, Consumer<Record> replay) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long end = replay(channel, replay);
+			if (end < channel.size()) { // a torn / corrupt tail
+				channel.truncate(end);
+				channel.force(false);
+			}
+			channel.position(end);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		WriteAheadLog log = new WriteAheadLog(channel, policy, file.getFileName().toString());
+		log.committer.start();
+		return log;
+	}
+
+	/**
+	 * queues a record for the committer.
+	 * @param record the record
+	 * @return
+	 * a future which completes when the record is committed (by the sync policy), <br>
+	 * or completes exceptionally if the log failed or is closed
+	 */
+	public CompletableFuture<Void> append(Record record) {
+		ByteBuffer bytes = record.encode();
+		this.lock.lock();
+		try {
+			IOException rejection = rejection();
+			if (rejection != null) {
+				return CompletableFuture.failedFuture(rejection);
+			}
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			this.pending.add(bytes);
+			this.pendingFutures.add(future);
+			this.lastFuture = future;
+			if (this.pending.size() == 1) {
+				this.queued.signal();
+			}
+			return future;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * why append would reject a record now (the log failed or is closed), or null if it would queue it
+	 */
+	IOException rejection() {
+		this.lock.lock();
+		try {
+			if (this.failure != null) {
+				return this.failure;
+			}
+			return this.closed ? new IOException("the log is closed") : null;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * waits until every record appended so far is committed.
+	 * @throws IOException if the log failed
+	 */
+	public void sync() throws IOException {
+		CompletableFuture<Void> last;
+		this.lock.lock();
+		try {
+			last = this.lastFuture;
+		} finally {
+			this.lock.unlock();
+		}
+		try {
+			last.join();
+		} catch (java.util.concurrent.CompletionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * commits the queued records, forces the file and closes it. appends after close fail.
+	 * @throws IOException if the last commit or closing fails
+	 */
+	public void close() throws IOException {
+		this.lock.lock();
+		try {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.queued.signal();
+		} finally {
+			this.lock.unlock();
+		}
+		try {
+			this.committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if (this.failure == null) {
+				this.channel.force(false);
+			}
+		} finally {
+			this.channel.close();
+		}
+		if (this.failure != null) {
+			throw this.failure;
+		}
+	}
+
+	// -------- helper funcs ---------------
+
+	/**
+	 * the committer: takes all queued records, writes them with one gathering write, forces once (by the policy)
+	 * and completes their futures - until the log is closed and nothing is queued.
+	 */
+	private void commitLoop() {
+		while (true) {
+			List<ByteBuffer> batch;
+			List<CompletableFuture<Void>> futures;
+			this.lock.lock();
+			try {
+				while (this.pending.isEmpty() && !this.closed) {
+					this.queued.awaitUninterruptibly();
+				}
+				if (this.pending.isEmpty()) { // closed
+					return;
+				}
+				if (this.policy == SyncPolicy.BATCHED && !this.closed) {
+					long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW_MILLIS);
+					long left;
+					while (!this.closed && (left = deadline - System.nanoTime()) > 0) {
+						try {
+							this.queued.awaitNanos(left);
+						} catch (InterruptedException e) {
+							break;
+						}
+					}
+				}
+				batch = this.pending;
+				futures = this.pendingFutures;
+				this.pending = new ArrayList<>();
+				this.pendingFutures = new ArrayList<>();
+			} finally {
+				this.lock.unlock();
+			}
+			try {
+				ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+				long remaining = 0;
+				for (ByteBuffer buffer : buffers) {
+					remaining += buffer.remaining();
+				}
+				while (remaining > 0) {
+					remaining -= this.channel.write(buffers);
+				}
+				if (this.policy != SyncPolicy.NONE) {
+					this.channel.force(false);
+				}
+				for (CompletableFuture<Void> future : futures) {
+					future.complete(null);
+				}
+			} catch (IOException e) {
+				this.lock.lock();
+				try {
+					this.failure = e;
+					futures.addAll(this.pendingFutures); // fail the records queued meanwhile as well
+					this.pending.clear();
+					this.pendingFutures.clear();
+				} finally {
+					this.lock.unlock();
+				}
+				for (CompletableFuture<Void> future : futures) {
+					future.completeExceptionally(e);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * reads the records of the file from its start, until its end or the first torn / corrupt record.
+	 * @param channel the file
+	 * @param replay gets every valid record
+	 * @return
+	 * the position after the last valid record
+	 * @throws IOException if reading fails
+	 */
+	private static long replay(FileChannel channel, Consumer<Record> replay) throws IOException {
+		long size = channel.size();
+		long position = 0;
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+		CRC32 crc = new CRC32();
+		while (position + RECORD_HEADER_BYTES <= size) {
+			header.clear();
+			readFully(channel, header, position);
+			header.flip();
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if (length < PAYLOAD_FIXED_BYTES || length > size - position - RECORD_HEADER_BYTES) {
+				break;
+			}
+			ByteBuffer payload = ByteBuffer.allocate(length);
+			readFully(channel, payload, position + RECORD_HEADER_BYTES);
+			crc.reset();
+			crc.update(payload.array(), 0, length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			payload.flip();
+			Record record = Record.decode(payload);
+			if (record == null) {
+				break;
+			}
+			replay.accept(record);
+			position += RECORD_HEADER_BYTES + length;
+		}
+		return position;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position);
+			if (n < 0) {
+				throw new IOException("unexpected end of the log");
+			}
+			position += n;
+		}
+	}
+
+	/**
+	 * a mutation of a tree or list (made and replayed by DurableAVLTree / DurableTreeList)
+	 */
+	public static final class Record {
+		final byte op;
+		final int index;
+		final int key;
+		final String info;
+
+		private Record(byte op, int index, int key, String info) {
+			this.op = op;
+			this.index = index;
+			this.key = key;
+			this.info = info;
+		}
+
+		static Record insert(int key, String info) { return new Record(OP_INSERT, 0, key, info); }
+		static Record delete(int key) { return new Record(OP_DELETE, 0, key, null); }
+		static Record listInsert(int index, int key, String info) { return new Record(OP_LIST_INSERT, index, key, info); }
+		static Record listDelete(int index) { return new Record(OP_LIST_DELETE, index, 0, null); }
+
+		/**
+		 * @return
+		 * the record with its header (length, CRC), ready to write
+		 */
+		ByteBuffer encode() {
+			byte[] infoBytes = this.info == null ? null : this.info.getBytes(StandardCharsets.UTF_8);
+			int length = PAYLOAD_FIXED_BYTES + (infoBytes == null ? 0 : infoBytes.length);
+			ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+			buffer.position(RECORD_HEADER_BYTES);
+			buffer.put(this.op).putInt(this.index).putInt(this.key).putInt(infoBytes == null ? -1 : infoBytes.length);
+			if (infoBytes != null) {
+				buffer.put(infoBytes);
+			}
+			CRC32 crc = new CRC32();
+			crc.update(buffer.array(), RECORD_HEADER_BYTES, length);
+			buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+			buffer.flip();
+			return buffer;
+		}
+
+		/**
+		 * @param payload a payload whose CRC matched
+		 * @return
+		 * the record, or null if the payload isn't a valid record
+		 */
+		static Record decode(ByteBuffer payload) {
+			byte op = payload.get();
+			int index = payload.getInt();
+			int key = payload.getInt();
+			int infoLength = payload.getInt();
+			if (op < OP_INSERT || op > OP_LIST_DELETE || (infoLength == -1 ? payload.hasRemaining() : infoLength != payload.remaining())) {
+				return null;
+			}
+			String info = infoLength == -1 ? null
+					: new String(payload.array(), payload.position(), infoLength, StandardCharsets.UTF_8);
+			return new Record(op, index, key, info);
+		}
+	}
+}